@@ -2,8 +2,10 @@ package br.dev.optimus.gaia;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@EnableScheduling
 public class GaiaApplication {
 
 	public static void main(String[] args) {
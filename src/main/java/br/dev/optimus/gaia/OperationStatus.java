@@ -0,0 +1,8 @@
+package br.dev.optimus.gaia;
+
+public enum OperationStatus {
+    PENDING,
+    RUNNING,
+    SUCCEEDED,
+    FAILED
+}
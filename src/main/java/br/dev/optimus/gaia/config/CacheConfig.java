@@ -0,0 +1,68 @@
+package br.dev.optimus.gaia.config;
+
+import java.net.URI;
+import java.util.List;
+import java.util.OptionalLong;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.hibernate.cache.spi.RegionFactory;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+import com.github.benmanes.caffeine.jcache.configuration.CaffeineConfiguration;
+import com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.JCacheMetrics;
+
+@Configuration
+public class CacheConfig {
+    private static final List<String> TABLES = List.of("configmaps", "secrets", "persistent_volumes",
+            "persistent_volume_claims", "statefulsets");
+
+    // every context gets its own manager so test contexts never share cached rows
+    @Bean(destroyMethod = "close")
+    CacheManager entityCacheManager(Environment env, MeterRegistry registry) {
+        var manager = Caching.getCachingProvider(CaffeineCachingProvider.class.getName())
+                .getCacheManager(URI.create("gaia:" + UUID.randomUUID()), getClass().getClassLoader());
+        // an entry count bound costs nothing per put, a weigher would have to measure every cached row
+        var entries = env.getProperty("gaia.cache.max-entries", Long.class, 10_000L);
+        // writes by other instances never evict the entries here and statefulsets have no informer refreshing
+        // them, so an entry is only trusted for a bounded time
+        var expiry = env.getProperty("gaia.cache.expire-after-write", Long.class, 30_000L);
+        var expireAfterWrite = expiry > 0 ? OptionalLong.of(TimeUnit.MILLISECONDS.toNanos(expiry))
+                : OptionalLong.empty();
+        for (var table : TABLES) {
+            for (var region : List.of("gaia." + table, "gaia." + table + ".lookup")) {
+                var cache = manager.createCache(region, configuration(OptionalLong.of(entries), expireAfterWrite));
+                JCacheMetrics.monitor(registry, cache);
+            }
+        }
+        // hibernate compares query results against this region, evicting from it would serve stale lookups
+        manager.createCache(RegionFactory.DEFAULT_UPDATE_TIMESTAMPS_REGION_UNQUALIFIED_NAME,
+                configuration(OptionalLong.empty(), OptionalLong.empty()));
+        return manager;
+    }
+
+    @Bean
+    HibernatePropertiesCustomizer entityCacheCustomizer(CacheManager entityCacheManager) {
+        return properties -> properties.put(ConfigSettings.CACHE_MANAGER, entityCacheManager);
+    }
+
+    private static CaffeineConfiguration<Object, Object> configuration(OptionalLong entries,
+            OptionalLong expireAfterWrite) {
+        var configuration = new CaffeineConfiguration<>();
+        configuration.setStoreByValue(false);
+        configuration.setStatisticsEnabled(true);
+        configuration.setMaximumSize(entries);
+        configuration.setExpireAfterWrite(expireAfterWrite);
+        return configuration;
+    }
+}
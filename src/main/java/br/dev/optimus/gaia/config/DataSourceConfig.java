@@ -0,0 +1,83 @@
+package br.dev.optimus.gaia.config;
+
+import java.util.Map;
+
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.env.Environment;
+import org.springframework.core.task.TaskDecorator;
+import org.springframework.orm.jpa.AbstractEntityManagerFactoryBean;
+
+import com.zaxxer.hikari.HikariDataSource;
+
+// only active with a replica configured, otherwise spring.datasource is used as is
+@Configuration
+@ConditionalOnProperty("gaia.datasource.replica.url")
+public class DataSourceConfig {
+    private final Environment env;
+
+    public DataSourceConfig(Environment env) {
+        this.env = env;
+    }
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        return properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+    }
+
+    @Bean
+    HikariDataSource replicaDataSource(DataSourceProperties properties) {
+        var replica = DataSourceBuilder.create()
+                .type(HikariDataSource.class)
+                .url(env.getProperty("gaia.datasource.replica.url"))
+                .username(env.getProperty("gaia.datasource.replica.username", properties.determineUsername()))
+                .password(env.getProperty("gaia.datasource.replica.password", properties.determinePassword()))
+                .build();
+        replica.setPoolName("replica");
+        replica.setMaximumPoolSize(env.getProperty("gaia.datasource.replica.pool-size", Integer.class, 10));
+        replica.setReadOnly(true);
+        return replica;
+    }
+
+    @Bean
+    @Primary
+    DataSource dataSource(HikariDataSource primaryDataSource, HikariDataSource replicaDataSource) {
+        var routing = new ReplicaRouting();
+        routing.setTargetDataSources(Map.of(ReplicaRouting.PRIMARY, primaryDataSource,
+                ReplicaRouting.REPLICA, replicaDataSource));
+        routing.setDefaultTargetDataSource(primaryDataSource);
+        return routing;
+    }
+
+    @Bean
+    TaskDecorator replicaTaskDecorator() {
+        return ReplicaRouting::propagate;
+    }
+
+    @Bean
+    ReplicaFilter replicaFilter() {
+        return new ReplicaFilter(env.getProperty("gaia.datasource.replica.read-your-writes", Integer.class, 5));
+    }
+
+    @Bean
+    static BeanPostProcessor replicaCacheMode() {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessBeforeInitialization(Object bean, String beanName) {
+                if (bean instanceof AbstractEntityManagerFactoryBean factory) {
+                    factory.setEntityManagerInitializer(ReplicaRouting::initialize);
+                }
+                return bean;
+            }
+        };
+    }
+}
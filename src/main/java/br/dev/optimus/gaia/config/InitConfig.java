@@ -1,13 +1,43 @@
 package br.dev.optimus.gaia.config;
 
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.boot.CommandLineRunner;
+import org.springframework.boot.actuate.availability.ReadinessStateHealthIndicator;
+import org.springframework.boot.availability.ApplicationAvailability;
+import org.springframework.boot.availability.AvailabilityChangeEvent;
+import org.springframework.boot.availability.AvailabilityState;
+import org.springframework.boot.availability.ReadinessState;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.scheduling.annotation.Scheduled;
 
 import br.dev.optimus.gaia.service.ConfigMapService;
+import br.dev.optimus.gaia.service.InformerService;
+import br.dev.optimus.gaia.service.KubernetesThrottle;
+import br.dev.optimus.gaia.service.NamespaceService;
 import br.dev.optimus.gaia.service.PersistentVolumeClaimService;
 import br.dev.optimus.gaia.service.PersistentVolumeService;
 import br.dev.optimus.gaia.service.SecretService;
+import br.dev.optimus.gaia.sync.SyncResult;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 
 @Configuration
 public class InitConfig {
@@ -15,22 +45,176 @@ public class InitConfig {
     private final PersistentVolumeClaimService pvcService;
     private final ConfigMapService configMapService;
     private final SecretService secretService;
+    private final NamespaceService namespaceService;
+    private final InformerService informers;
+    private final KubernetesThrottle throttle;
+    private final ApplicationEventPublisher publisher;
+    private final MeterRegistry registry;
+    private final int parallelism;
+    private final long retryInterval;
+    private final int maxAttempts;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final Semaphore permits;
+    private final CompletableFuture<Void> synced = new CompletableFuture<>();
+    private final List<CompletableFuture<Void>> shards = new CopyOnWriteArrayList<>();
+    private final Set<String> degraded = ConcurrentHashMap.newKeySet();
+    private final Set<String> watched = ConcurrentHashMap.newKeySet();
+    private final Logger log = LoggerFactory.getLogger(InitConfig.class);
 
     public InitConfig(PersistentVolumeService pvService, PersistentVolumeClaimService pvcService,
-            ConfigMapService configMapService, SecretService secretService) {
+            ConfigMapService configMapService, SecretService secretService, NamespaceService namespaceService,
+            InformerService informers, KubernetesThrottle throttle, ApplicationEventPublisher publisher,
+            MeterRegistry registry, Environment env) {
         this.pvService = pvService;
         this.pvcService = pvcService;
         this.configMapService = configMapService;
         this.secretService = secretService;
+        this.namespaceService = namespaceService;
+        this.informers = informers;
+        this.throttle = throttle;
+        this.publisher = publisher;
+        this.registry = registry;
+        this.parallelism = env.getProperty("gaia.sync.parallelism", Integer.class,
+                Runtime.getRuntime().availableProcessors());
+        this.permits = new Semaphore(Math.max(parallelism, 1));
+        this.retryInterval = env.getProperty("gaia.sync.retry-interval", Long.class, 30_000L);
+        this.maxAttempts = Math.max(env.getProperty("gaia.sync.max-attempts", Integer.class, 5), 1);
+        Gauge.builder("gaia.sync.degraded", degraded, Set::size)
+                .description("startup sync shards that failed every attempt and are left to their informer")
+                .register(registry);
     }
 
+    // the namespaces are resolved with the shards so a slow cluster doesn't hold up startup
     @Bean
     CommandLineRunner init() {
         return args -> {
-            pvService.sync();
-            pvcService.sync();
-            configMapService.sync();
-            secretService.sync();
+            var resolved = new CompletableFuture<List<String>>();
+            attempt("namespaces", () -> throttle.sync(namespaceService::resolve), resolved, 1);
+            var namespaced = resolved
+                    .thenCompose(namespaces -> {
+                        log.info("syncing {} namespaces with {} workers", namespaces.size(), parallelism);
+                        watched.addAll(namespaces);
+                        return sync(namespaces);
+                    })
+                    .exceptionally(e -> null);
+            CompletableFuture.allOf(
+                    sync("persistent volumes", null, pvService::sync)
+                            .thenRun(pvService::watch),
+                    namespaced)
+                    .thenCompose(v -> CompletableFuture.allOf(shards.toArray(CompletableFuture[]::new)))
+                    .whenComplete((v, e) -> {
+                        if (degraded.isEmpty()) {
+                            log.info("initial sync finished");
+                        } else {
+                            log.warn("initial sync finished, degraded: {}", degraded);
+                        }
+                        synced.complete(null);
+                        AvailabilityChangeEvent.publish(publisher, this, ReadinessState.ACCEPTING_TRAFFIC);
+                    });
+        };
+    }
+
+    // namespaces matching the selector after startup are synced and watched, those no longer matching stop
+    // being watched and keep their rows. A single informer already sees every namespace with all-namespaces
+    @Scheduled(fixedDelayString = "${gaia.sync.namespace-refresh:60000}",
+            initialDelayString = "${gaia.sync.namespace-refresh:60000}")
+    public void refresh() {
+        if (!namespaceService.isSelected() || !synced.isDone()) {
+            return;
+        }
+        var namespaces = throttle.sync(namespaceService::resolve);
+        var added = namespaces.stream().filter(watched::add).toList();
+        var removed = watched.stream().filter(namespace -> !namespaces.contains(namespace)).toList();
+        removed.forEach(namespace -> {
+            log.info("namespace {} no longer matches, stopped watching it", namespace);
+            watched.remove(namespace);
+            informers.forget(namespace);
+        });
+        if (!added.isEmpty()) {
+            log.info("syncing {} new namespaces: {}", added.size(), added);
+            sync(added);
+        }
+    }
+
+    private CompletableFuture<Void> sync(List<String> namespaces) {
+        return CompletableFuture.allOf(
+                sync("persistent volume claims", namespaces, pvcService::sync, pvcService::watch),
+                sync("config maps", namespaces, configMapService::sync, configMapService::watch),
+                sync("secrets", namespaces, secretService::sync, secretService::watch));
+    }
+
+    // one shard per namespace, each namespace is watched as soon as its own shard is done
+    private CompletableFuture<Void> sync(String kind, List<String> namespaces, Function<String, SyncResult> sync,
+            Consumer<String> watch) {
+        var shards = namespaces.stream()
+                .map(namespace -> {
+                    var shard = sync(kind, namespace, () -> sync.apply(namespace));
+                    return namespaceService.isAll() ? shard : shard.thenRun(() -> watch.accept(namespace));
+                })
+                .toArray(CompletableFuture[]::new);
+        var all = CompletableFuture.allOf(shards);
+        return namespaceService.isAll() ? all.thenRun(() -> watch.accept(null)) : all;
+    }
+
+    // the returned future completes after the first attempt, so the informer of a failed shard still starts
+    // and converges on its own. Readiness waits until every shard has succeeded or used up its attempts
+    private CompletableFuture<Void> sync(String kind, String namespace, Supplier<SyncResult> sync) {
+        var shard = namespace == null ? kind : kind + " in " + namespace;
+        var timer = Timer.builder("gaia.sync")
+                .description("time spent syncing one kind in one namespace")
+                .tag("kind", kind)
+                .tag("namespace", namespace == null ? "cluster" : namespace)
+                .register(registry);
+        Supplier<SyncResult> attempt = () -> {
+            permits.acquireUninterruptibly();
+            var start = System.nanoTime();
+            try {
+                var result = throttle.sync(sync);
+                var elapsed = System.nanoTime() - start;
+                timer.record(elapsed, TimeUnit.NANOSECONDS);
+                log.info("synced {} in {}ms: {} written, {} unchanged, {} deleted", shard,
+                        TimeUnit.NANOSECONDS.toMillis(elapsed), result.written(), result.skipped(), result.deleted());
+                return result;
+            } finally {
+                permits.release();
+            }
+        };
+        var done = new CompletableFuture<SyncResult>();
+        shards.add(done.handle((v, e) -> null));
+        return attempt(shard, attempt, done, 1).handle((v, e) -> null);
+    }
+
+    // a task failing deterministically would be retried forever, after gaia.sync.max-attempts it is marked
+    // degraded and done completes exceptionally
+    private <T> CompletableFuture<T> attempt(String task, Supplier<T> attempt, CompletableFuture<T> done, int number) {
+        var run = number == 1 ? CompletableFuture.supplyAsync(attempt, executor)
+                : CompletableFuture.supplyAsync(attempt,
+                        CompletableFuture.delayedExecutor(retryInterval, TimeUnit.MILLISECONDS, executor));
+        run.whenComplete((v, e) -> {
+            if (e == null) {
+                done.complete(v);
+            } else if (number < maxAttempts) {
+                log.error("failed to sync {} ({}/{}), retrying in {}ms", task, number, maxAttempts, retryInterval, e);
+                attempt(task, attempt, done, number + 1);
+            } else {
+                log.error("failed to sync {} after {} attempts, marking it degraded", task, maxAttempts, e);
+                degraded.add(task);
+                done.completeExceptionally(e);
+            }
+        });
+        return run;
+    }
+
+    @Bean("readinessStateHealthIndicator")
+    ReadinessStateHealthIndicator readinessStateHealthIndicator(ApplicationAvailability availability) {
+        return new ReadinessStateHealthIndicator(availability) {
+            @Override
+            protected AvailabilityState getState(ApplicationAvailability applicationAvailability) {
+                if (!synced.isDone()) {
+                    return ReadinessState.REFUSING_TRAFFIC;
+                }
+                return super.getState(applicationAvailability);
+            }
         };
     }
 }
@@ -1,15 +1,76 @@
 package br.dev.optimus.gaia.config;
 
+import java.util.concurrent.TimeUnit;
+
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
 
+import io.fabric8.kubernetes.client.Config;
+import io.fabric8.kubernetes.client.ConfigBuilder;
 import io.fabric8.kubernetes.client.KubernetesClient;
 import io.fabric8.kubernetes.client.KubernetesClientBuilder;
+import io.fabric8.kubernetes.client.http.HttpClient;
+import io.fabric8.kubernetes.client.jdkhttp.JdkHttpClientFactory;
+import io.fabric8.kubernetes.client.okhttp.OkHttpClientFactory;
+import io.fabric8.kubernetes.client.vertx.VertxHttpClientFactory;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import okhttp3.ConnectionPool;
+import okhttp3.OkHttpClient;
 
 @Configuration
 public class KubernetesConfig {
     @Bean
-    KubernetesClient kubernetesClient() {
-        return new KubernetesClientBuilder().build();
+    KubernetesClient kubernetesClient(Environment env, MeterRegistry registry) {
+        return new KubernetesClientBuilder()
+                .withConfig(config(env, Config.autoConfigure(null)))
+                .withHttpClientFactory(factory(env, registry))
+                .build();
+    }
+
+    // timeouts and limits on top of the kubeconfig or in-cluster settings
+    public static Config config(Environment env, Config base) {
+        return new ConfigBuilder(base)
+                .withConnectionTimeout(env.getProperty("gaia.kubernetes.connect-timeout", Integer.class, 10000))
+                .withRequestTimeout(env.getProperty("gaia.kubernetes.request-timeout", Integer.class, 10000))
+                .withWatchReconnectInterval(
+                        env.getProperty("gaia.kubernetes.watch-reconnect-interval", Integer.class, 1000))
+                .withWebsocketPingInterval(
+                        env.getProperty("gaia.kubernetes.websocket-ping-interval", Long.class, 30000L))
+                .withMaxConcurrentRequests(
+                        env.getProperty("gaia.kubernetes.max-concurrent-requests", Integer.class, 64))
+                .withMaxConcurrentRequestsPerHost(
+                        env.getProperty("gaia.kubernetes.max-concurrent-requests-per-host", Integer.class, 32))
+                .withHttp2Disable(!env.getProperty("gaia.kubernetes.http2", Boolean.class, true))
+                .build();
+    }
+
+    public static HttpClient.Factory factory(Environment env, MeterRegistry registry) {
+        var transport = env.getProperty("gaia.kubernetes.http-client", "okhttp");
+        return switch (transport) {
+            case "jdk" -> new JdkHttpClientFactory();
+            case "vertx" -> new VertxHttpClientFactory();
+            case "okhttp" -> okHttp(env, registry);
+            default -> throw new IllegalArgumentException("unknown gaia.kubernetes.http-client: " + transport);
+        };
+    }
+
+    // only okhttp exposes its pool, so its size and keep-alive can be tuned and measured
+    private static HttpClient.Factory okHttp(Environment env, MeterRegistry registry) {
+        var pool = new ConnectionPool(env.getProperty("gaia.kubernetes.pool.max-idle", Integer.class, 5),
+                env.getProperty("gaia.kubernetes.pool.keep-alive", Long.class, 300L), TimeUnit.SECONDS);
+        Gauge.builder("gaia.kubernetes.pool.connections", pool, ConnectionPool::connectionCount)
+                .description("open connections to the api server")
+                .register(registry);
+        Gauge.builder("gaia.kubernetes.pool.idle", pool, ConnectionPool::idleConnectionCount)
+                .description("idle connections kept alive for reuse")
+                .register(registry);
+        return new OkHttpClientFactory() {
+            @Override
+            protected void additionalConfig(OkHttpClient.Builder builder) {
+                builder.connectionPool(pool);
+            }
+        };
     }
 }
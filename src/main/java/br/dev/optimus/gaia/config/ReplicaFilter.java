@@ -0,0 +1,49 @@
+package br.dev.optimus.gaia.config;
+
+import java.io.IOException;
+
+import org.springframework.http.HttpMethod;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.WebUtils;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+// a write marks its client with a short lived cookie, reads carrying it stay on the primary so
+// the client never reads behind its own writes while the replica catches up. It runs as a filter
+// so the lane is set before the request opens its EntityManager
+class ReplicaFilter extends OncePerRequestFilter {
+    static final String COOKIE = "gaia-primary";
+
+    private final int window;
+
+    ReplicaFilter(int window) {
+        this.window = window;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        var read = HttpMethod.GET.matches(request.getMethod()) || HttpMethod.HEAD.matches(request.getMethod());
+        if (!read && window > 0) {
+            var cookie = new Cookie(COOKIE, "1");
+            cookie.setPath("/");
+            cookie.setMaxAge(window);
+            cookie.setHttpOnly(true);
+            response.addCookie(cookie);
+        }
+        if (!read || WebUtils.getCookie(request, COOKIE) != null) {
+            chain.doFilter(request, response);
+            return;
+        }
+        ReplicaRouting.begin();
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            ReplicaRouting.end();
+        }
+    }
+}
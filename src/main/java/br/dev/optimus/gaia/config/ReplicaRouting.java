@@ -0,0 +1,55 @@
+package br.dev.optimus.gaia.config;
+
+import org.hibernate.CacheMode;
+import org.hibernate.Session;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+import jakarta.persistence.EntityManager;
+
+// the key is looked up when a connection is opened, a thread reads from the replica only while it
+// serves a request marked by ReplicaFilter
+class ReplicaRouting extends AbstractRoutingDataSource {
+    static final String PRIMARY = "primary";
+    static final String REPLICA = "replica";
+    private static final ThreadLocal<Boolean> READS = new ThreadLocal<>();
+
+    static void begin() {
+        READS.set(true);
+    }
+
+    static void end() {
+        READS.remove();
+    }
+
+    static boolean reading() {
+        return Boolean.TRUE.equals(READS.get());
+    }
+
+    // a replica session may read the second-level cache but never fills it, otherwise a lagging row
+    // cached after a primary write would look current to the write paths
+    static void initialize(EntityManager entityManager) {
+        if (reading()) {
+            entityManager.unwrap(Session.class).setCacheMode(CacheMode.GET);
+        }
+    }
+
+    // streamed responses are written on another thread, which keeps the lane of the request
+    static Runnable propagate(Runnable task) {
+        if (!reading()) {
+            return task;
+        }
+        return () -> {
+            begin();
+            try {
+                task.run();
+            } finally {
+                end();
+            }
+        };
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        return reading() ? REPLICA : PRIMARY;
+    }
+}
@@ -0,0 +1,27 @@
+package br.dev.optimus.gaia.controller;
+
+import java.util.List;
+
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import br.dev.optimus.gaia.request.BatchRequest;
+import br.dev.optimus.gaia.service.BatchService;
+
+@RestController
+@RequestMapping("/batch")
+public class BatchController {
+    private final BatchService service;
+
+    public BatchController(BatchService service) {
+        this.service = service;
+    }
+
+    @PostMapping
+    public ResponseEntity<?> apply(@RequestBody List<BatchRequest.Item> items) {
+        return ResponseEntity.ok(service.apply(items));
+    }
+}
@@ -1,6 +1,8 @@
 package br.dev.optimus.gaia.controller;
 
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -8,43 +10,81 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
 
+import br.dev.optimus.gaia.exception.PreconditionFailedException;
+import br.dev.optimus.gaia.model.DBConfigMap;
 import br.dev.optimus.gaia.request.ConfigMapRequest;
+import br.dev.optimus.gaia.response.ListStreamer;
+import br.dev.optimus.gaia.service.OperationService;
 import br.dev.optimus.gaia.service.ConfigMapService;
 
 @RestController
 @RequestMapping("/configmap")
 public class ConfigMapController {
     private final ConfigMapService service;
+    private final ListStreamer streamer;
+    private final OperationService operations;
 
-    public ConfigMapController(ConfigMapService service) {
+    public ConfigMapController(ConfigMapService service, ListStreamer streamer, OperationService operations) {
         this.service = service;
+        this.streamer = streamer;
+        this.operations = operations;
     }
 
     @GetMapping
-    public ResponseEntity<?> index() {
-        return ResponseEntity.ok(service.list());
+    public ResponseEntity<?> index(@RequestParam(required = false) Long after,
+            @RequestParam(required = false) Integer limit) {
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(streamer.stream(service::list, DBConfigMap::getId, after, limit));
     }
 
     @GetMapping("/{id}")
-    public ResponseEntity<?> show(@PathVariable Long id) {
-        return ResponseEntity.ok(service.get(id));
+    public ResponseEntity<?> show(@PathVariable Long id, WebRequest request) {
+        // the version is read on its own, a matching If-None-Match never loads the row
+        if (request.getHeader(HttpHeaders.IF_NONE_MATCH) != null
+                && request.checkNotModified(ETags.of(service.version(id)))) {
+            return null;
+        }
+        var data = service.get(id);
+        return ResponseEntity.ok().eTag(ETags.of(data.getVersion())).body(data);
     }
 
     @PostMapping
-    public ResponseEntity<?> create(@RequestBody ConfigMapRequest.Create request) {
-        return ResponseEntity.status(HttpStatus.CREATED).body(service.create(request));
+    public ResponseEntity<?> create(@RequestBody ConfigMapRequest.Create request,
+            @RequestParam(defaultValue = "false") boolean async) {
+        if (async) {
+            return OperationController.accepted(operations.submit("configmap", "create", null, request));
+        }
+        var data = service.create(request);
+        return ResponseEntity.status(HttpStatus.CREATED).eTag(ETags.of(data.getVersion())).body(data);
     }
 
     @PutMapping("/{id}")
-    public ResponseEntity<?> update(@PathVariable Long id, @RequestBody ConfigMapRequest.Update request) {
-        return ResponseEntity.ok(service.update(id, request));
+    public ResponseEntity<?> update(@PathVariable Long id, @RequestBody ConfigMapRequest.Update request,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+            @RequestParam(defaultValue = "false") boolean async) {
+        var version = ETags.version(ifMatch);
+        if (async) {
+            if (version != null && version != service.version(id)) {
+                throw new PreconditionFailedException("config map has been modified");
+            }
+            return OperationController.accepted(operations.submit("configmap", "update", id, request, version));
+        }
+        var data = service.update(id, request, version);
+        return ResponseEntity.ok().eTag(ETags.of(data.getVersion())).body(data);
     }
 
     @DeleteMapping("/{id}")
-    public ResponseEntity<?> delete(@PathVariable Long id) {
+    public ResponseEntity<?> delete(@PathVariable Long id, @RequestParam(defaultValue = "false") boolean async) {
+        if (async) {
+            return OperationController.accepted(operations.submit("configmap", "delete", id, null));
+        }
         service.delete(id);
         return ResponseEntity.noContent().build();
     }
@@ -0,0 +1,33 @@
+package br.dev.optimus.gaia.controller;
+
+import java.net.URI;
+
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import br.dev.optimus.gaia.model.DBOperation;
+import br.dev.optimus.gaia.service.OperationService;
+
+@RestController
+@RequestMapping("/operations")
+public class OperationController {
+    private final OperationService service;
+
+    public OperationController(OperationService service) {
+        this.service = service;
+    }
+
+    static ResponseEntity<?> accepted(DBOperation operation) {
+        return ResponseEntity.accepted()
+                .location(URI.create("/operations/" + operation.getId()))
+                .body(operation);
+    }
+
+    @GetMapping("/{id}")
+    public ResponseEntity<?> show(@PathVariable Long id) {
+        return ResponseEntity.ok(service.get(id));
+    }
+}
@@ -1,6 +1,8 @@
 package br.dev.optimus.gaia.controller;
 
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -8,50 +10,89 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
 
+import br.dev.optimus.gaia.exception.PreconditionFailedException;
+import br.dev.optimus.gaia.model.DBPersistentVolume;
 import br.dev.optimus.gaia.request.PersistentVolumeCreateRequest;
 import br.dev.optimus.gaia.request.PersistentVolumeUpdateRequest;
+import br.dev.optimus.gaia.response.ListStreamer;
+import br.dev.optimus.gaia.service.OperationService;
 import br.dev.optimus.gaia.service.PersistentVolumeService;
 
 @RestController
 @RequestMapping("/pv")
 public class PersistentVolumeController {
     private final PersistentVolumeService service;
+    private final ListStreamer streamer;
+    private final OperationService operations;
 
-    public PersistentVolumeController(PersistentVolumeService service) {
+    public PersistentVolumeController(PersistentVolumeService service, ListStreamer streamer,
+            OperationService operations) {
         this.service = service;
+        this.streamer = streamer;
+        this.operations = operations;
     }
 
     @GetMapping
-    public ResponseEntity<?> index() {
-        return ResponseEntity.ok(service.getAll());
+    public ResponseEntity<?> index(@RequestParam(required = false) Long after,
+            @RequestParam(required = false) Integer limit) {
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(streamer.stream(service::getAll, DBPersistentVolume::getId, after, limit));
     }
 
     @GetMapping("/{id}")
-    public ResponseEntity<?> show(@PathVariable long id) {
-        return ResponseEntity.ok(service.get(id));
+    public ResponseEntity<?> show(@PathVariable long id, WebRequest request) {
+        if (request.getHeader(HttpHeaders.IF_NONE_MATCH) != null
+                && request.checkNotModified(ETags.of(service.version(id)))) {
+            return null;
+        }
+        var data = service.get(id);
+        return ResponseEntity.ok().eTag(ETags.of(data.getVersion())).body(data);
     }
 
     @PostMapping
-    public ResponseEntity<?> create(@RequestBody PersistentVolumeCreateRequest request) {
-        return ResponseEntity.status(HttpStatus.CREATED).body(service.create(request));
+    public ResponseEntity<?> create(@RequestBody PersistentVolumeCreateRequest request,
+            @RequestParam(defaultValue = "false") boolean async) {
+        if (async) {
+            return OperationController.accepted(operations.submit("pv", "create", null, request));
+        }
+        var data = service.create(request);
+        return ResponseEntity.status(HttpStatus.CREATED).eTag(ETags.of(data.getVersion())).body(data);
     }
 
     @PutMapping("/{id}")
-    public ResponseEntity<?> update(@PathVariable long id, @RequestBody PersistentVolumeUpdateRequest request) {
-        return ResponseEntity.ok(service.update(id, request));
+    public ResponseEntity<?> update(@PathVariable long id, @RequestBody PersistentVolumeUpdateRequest request,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+            @RequestParam(defaultValue = "false") boolean async) {
+        var version = ETags.version(ifMatch);
+        if (async) {
+            if (version != null && version != service.version(id)) {
+                throw new PreconditionFailedException("persistent volume has been modified");
+            }
+            return OperationController.accepted(operations.submit("pv", "update", id, request, version));
+        }
+        var data = service.update(id, request, version);
+        return ResponseEntity.ok().eTag(ETags.of(data.getVersion())).body(data);
     }
 
     @DeleteMapping("/{id}")
-    public ResponseEntity<?> delete(@PathVariable long id) {
+    public ResponseEntity<?> delete(@PathVariable long id, @RequestParam(defaultValue = "false") boolean async) {
+        if (async) {
+            return OperationController.accepted(operations.submit("pv", "delete", id, null));
+        }
         service.delete(id);
         return ResponseEntity.noContent().build();
     }
 
     @GetMapping("/{namespace}/{name}")
-    public ResponseEntity<?> get(@PathVariable String namespace, @PathVariable String name) {
-        return ResponseEntity.ok(service.get(namespace, name));
+    public ResponseEntity<?> get(@PathVariable String namespace, @PathVariable String name,
+            @RequestParam(defaultValue = "false") boolean live) {
+        return ResponseEntity.ok(service.get(namespace, name, live));
     }
 }
\ No newline at end of file
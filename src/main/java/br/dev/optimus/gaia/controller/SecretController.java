@@ -1,6 +1,8 @@
 package br.dev.optimus.gaia.controller;
 
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -8,43 +10,69 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
 
+import br.dev.optimus.gaia.model.DBSecret;
 import br.dev.optimus.gaia.request.SecretRequest;
+import br.dev.optimus.gaia.response.ListStreamer;
+import br.dev.optimus.gaia.service.OperationService;
 import br.dev.optimus.gaia.service.SecretService;
 
 @RestController
 @RequestMapping("/secret")
 public class SecretController {
     private final SecretService service;
+    private final ListStreamer streamer;
+    private final OperationService operations;
 
-    public SecretController(SecretService service) {
+    public SecretController(SecretService service, ListStreamer streamer, OperationService operations) {
         this.service = service;
+        this.streamer = streamer;
+        this.operations = operations;
     }
 
     @GetMapping
-    public ResponseEntity<?> index() {
-        return ResponseEntity.ok(service.list());
+    public ResponseEntity<?> index(@RequestParam(required = false) Long after,
+            @RequestParam(required = false) Integer limit) {
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(streamer.stream(service::list, DBSecret::getId, after, limit));
     }
 
     @GetMapping("/{id}")
-    public ResponseEntity<?> show(@PathVariable Long id) {
-        return ResponseEntity.ok(service.get(id));
+    public ResponseEntity<?> show(@PathVariable Long id, WebRequest request) {
+        if (request.getHeader(HttpHeaders.IF_NONE_MATCH) != null
+                && request.checkNotModified(ETags.of(service.version(id)))) {
+            return null;
+        }
+        var data = service.get(id);
+        return ResponseEntity.ok().eTag(ETags.of(data.getVersion())).body(data);
     }
 
+    // secret values are never queued as operation payloads, so creates and updates always run in the request
     @PostMapping
     public ResponseEntity<?> create(@RequestBody SecretRequest.Create request) {
-        return ResponseEntity.status(HttpStatus.CREATED).body(service.create(request));
+        var data = service.create(request);
+        return ResponseEntity.status(HttpStatus.CREATED).eTag(ETags.of(data.getVersion())).body(data);
     }
 
     @PutMapping("/{id}")
-    public ResponseEntity<?> update(@PathVariable Long id, @RequestBody SecretRequest.Update request) {
-        return ResponseEntity.ok(service.update(id, request));
+    public ResponseEntity<?> update(@PathVariable Long id, @RequestBody SecretRequest.Update request,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        var version = ETags.version(ifMatch);
+        var data = service.update(id, request, version);
+        return ResponseEntity.ok().eTag(ETags.of(data.getVersion())).body(data);
     }
 
     @DeleteMapping("/{id}")
-    public ResponseEntity<?> delete(@PathVariable Long id) {
+    public ResponseEntity<?> delete(@PathVariable Long id, @RequestParam(defaultValue = "false") boolean async) {
+        if (async) {
+            return OperationController.accepted(operations.submit("secret", "delete", id, null));
+        }
         service.delete(id);
         return ResponseEntity.noContent().build();
     }
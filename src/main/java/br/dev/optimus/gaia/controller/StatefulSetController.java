@@ -1,6 +1,8 @@
 package br.dev.optimus.gaia.controller;
 
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -8,43 +10,101 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
 
+import br.dev.optimus.gaia.exception.BadRequestException;
+import br.dev.optimus.gaia.exception.PreconditionFailedException;
+import br.dev.optimus.gaia.model.DBStatefulSet;
+import br.dev.optimus.gaia.repository.StatefulSetOverview;
+import br.dev.optimus.gaia.repository.StatefulSetSummary;
 import br.dev.optimus.gaia.request.StatefulSetRequest;
+import br.dev.optimus.gaia.response.ListStreamer;
+import br.dev.optimus.gaia.service.OperationService;
 import br.dev.optimus.gaia.service.StatefulSetService;
 
 @RestController
 @RequestMapping("/statefulset")
 public class StatefulSetController {
     private final StatefulSetService service;
+    private final ListStreamer streamer;
+    private final OperationService operations;
 
-    public StatefulSetController(StatefulSetService statefulSetService) {
+    public StatefulSetController(StatefulSetService statefulSetService, ListStreamer streamer,
+            OperationService operations) {
         this.service = statefulSetService;
+        this.streamer = streamer;
+        this.operations = operations;
     }
 
+    // rows are listed as overviews, view=full returns them with their containers and volumes
     @GetMapping
-    public ResponseEntity<?> index() {
-        return ResponseEntity.ok(service.list());
+    public ResponseEntity<?> index(@RequestParam(required = false) Long after,
+            @RequestParam(required = false) Integer limit, @RequestParam(defaultValue = "summary") String view) {
+        var body = switch (view) {
+            case "summary" -> streamer.stream(service::overviews, StatefulSetOverview::id, after, limit);
+            case "full" -> streamer.stream(service::list, DBStatefulSet::getId, after, limit);
+            default -> throw new BadRequestException("view must be summary or full", "view");
+        };
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(body);
+    }
+
+    @GetMapping("/search")
+    public ResponseEntity<?> search(@RequestParam(required = false) String image,
+            @RequestParam(name = "env_from", required = false) String envFrom,
+            @RequestParam(required = false) String claim, @RequestParam(required = false) Long after,
+            @RequestParam(required = false) Integer limit) {
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(streamer.stream(service.search(image, envFrom, claim), StatefulSetSummary::getId, after,
+                        limit));
     }
 
     @GetMapping("/{id}")
-    public ResponseEntity<?> show(@PathVariable Long id) {
-        return ResponseEntity.ok(service.get(id));
+    public ResponseEntity<?> show(@PathVariable Long id, WebRequest request) {
+        if (request.getHeader(HttpHeaders.IF_NONE_MATCH) != null
+                && request.checkNotModified(ETags.of(service.version(id)))) {
+            return null;
+        }
+        var data = service.get(id);
+        return ResponseEntity.ok().eTag(ETags.of(data.getVersion())).body(data);
     }
 
     @PostMapping
-    public ResponseEntity<?> create(@RequestBody StatefulSetRequest.Create request) {
-        return ResponseEntity.status(HttpStatus.CREATED).body(service.create(request));
+    public ResponseEntity<?> create(@RequestBody StatefulSetRequest.Create request,
+            @RequestParam(defaultValue = "false") boolean async) {
+        if (async) {
+            return OperationController.accepted(operations.submit("statefulset", "create", null, request));
+        }
+        var data = service.create(request);
+        return ResponseEntity.status(HttpStatus.CREATED).eTag(ETags.of(data.getVersion())).body(data);
     }
 
     @PutMapping("/{id}")
-    public ResponseEntity<?> update(@PathVariable Long id, @RequestBody StatefulSetRequest.Update request) {
-        return ResponseEntity.ok(service.update(id, request));
+    public ResponseEntity<?> update(@PathVariable Long id, @RequestBody StatefulSetRequest.Update request,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+            @RequestParam(defaultValue = "false") boolean async) {
+        var version = ETags.version(ifMatch);
+        if (async) {
+            if (version != null && version != service.version(id)) {
+                throw new PreconditionFailedException("statefulset has been modified");
+            }
+            return OperationController.accepted(operations.submit("statefulset", "update", id, request, version));
+        }
+        var result = service.update(id, request, version);
+        return ResponseEntity.ok().eTag(ETags.of(result.data().getVersion())).body(result);
     }
 
     @DeleteMapping("/{id}")
-    public ResponseEntity<?> delete(@PathVariable Long id) {
+    public ResponseEntity<?> delete(@PathVariable Long id, @RequestParam(defaultValue = "false") boolean async) {
+        if (async) {
+            return OperationController.accepted(operations.submit("statefulset", "delete", id, null));
+        }
         service.delete(id);
         return ResponseEntity.noContent().build();
     }
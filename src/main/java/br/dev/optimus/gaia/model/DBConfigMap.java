@@ -2,27 +2,37 @@ package br.dev.optimus.gaia.model;
 
 import java.util.Map;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import org.hibernate.annotations.JdbcTypeCode;
 import org.hibernate.type.SqlTypes;
 
 import com.fasterxml.jackson.annotation.JsonProperty;
 
 import br.dev.optimus.gaia.model.builder.DBConfigMapBuilder;
+import br.dev.optimus.gaia.sync.Fingerprint;
 import io.fabric8.kubernetes.api.model.ConfigMap;
 import io.fabric8.kubernetes.api.model.ConfigMapBuilder;
+import jakarta.persistence.Cacheable;
+import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.PrePersist;
+import jakarta.persistence.PreUpdate;
+import jakarta.persistence.SequenceGenerator;
 import jakarta.persistence.Table;
-import jakarta.persistence.UniqueConstraint;
+import jakarta.persistence.Version;
 
-@Table(name = "configmaps", schema = "gaia", uniqueConstraints = @UniqueConstraint(columnNames = { "namespace",
-        "name" }))
+@Table(name = "configmaps", schema = "gaia")
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "gaia.configmaps")
 public class DBConfigMap {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "configmaps_seq")
+    @SequenceGenerator(name = "configmaps_seq", sequenceName = "configmaps_seq", schema = "gaia", allocationSize = 50)
     private Long id;
     private String namespace;
     private String name;
@@ -34,6 +44,13 @@ public class DBConfigMap {
     private Long updatedAt;
     @JsonProperty("deleted_at")
     private Long deletedAt;
+    @Column(name = "resource_version")
+    @JsonProperty("resource_version")
+    private String resourceVersion;
+    private String uid;
+    private Long fingerprint;
+    @Version
+    private long version;
 
     public DBConfigMap() {
     }
@@ -118,4 +135,42 @@ public class DBConfigMap {
     public void setDeletedAt(Long deletedAt) {
         this.deletedAt = deletedAt;
     }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public void setVersion(long version) {
+        this.version = version;
+    }
+
+    public String getResourceVersion() {
+        return resourceVersion;
+    }
+
+    public void setResourceVersion(String resourceVersion) {
+        this.resourceVersion = resourceVersion;
+    }
+
+    public String getUid() {
+        return uid;
+    }
+
+    public void setUid(String uid) {
+        this.uid = uid;
+    }
+
+    public Long getFingerprint() {
+        return fingerprint;
+    }
+
+    public static long fingerprint(Map<String, String> data) {
+        return Fingerprint.of(data);
+    }
+
+    @PrePersist
+    @PreUpdate
+    void updateFingerprint() {
+        this.fingerprint = fingerprint(data);
+    }
 }
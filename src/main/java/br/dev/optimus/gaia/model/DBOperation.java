@@ -0,0 +1,205 @@
+package br.dev.optimus.gaia.model;
+
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.JsonNode;
+
+import br.dev.optimus.gaia.OperationStatus;
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.SequenceGenerator;
+import jakarta.persistence.Table;
+
+@Entity
+@Table(name = "operations", schema = "gaia", indexes = @Index(columnList = "status, id"))
+public class DBOperation {
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "operations_seq")
+    @SequenceGenerator(name = "operations_seq", sequenceName = "operations_seq", schema = "gaia", allocationSize = 50)
+    private Long id;
+    private String kind;
+    private String action;
+    @Column(name = "target_id")
+    @JsonProperty("target_id")
+    private Long targetId;
+    @Column(name = "expected_version")
+    @JsonProperty("expected_version")
+    private Long expectedVersion;
+    @JsonIgnore
+    @JdbcTypeCode(SqlTypes.JSON)
+    private JsonNode payload;
+    @Enumerated(EnumType.STRING)
+    private OperationStatus status;
+    @JdbcTypeCode(SqlTypes.JSON)
+    private JsonNode result;
+    private String error;
+    private String field;
+    private int attempts;
+    private String owner;
+    @Column(name = "lease_until")
+    @JsonProperty("lease_until")
+    private Long leaseUntil;
+    @Column(name = "created_at")
+    @JsonProperty("created_at")
+    private Long createdAt;
+    @Column(name = "started_at")
+    @JsonProperty("started_at")
+    private Long startedAt;
+    @Column(name = "finished_at")
+    @JsonProperty("finished_at")
+    private Long finishedAt;
+
+    public DBOperation() {
+    }
+
+    public DBOperation(String kind, String action, Long targetId, JsonNode payload) {
+        this.kind = kind;
+        this.action = action;
+        this.targetId = targetId;
+        this.payload = payload;
+        this.status = OperationStatus.PENDING;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Operation [id=%s, kind=%s, action=%s, targetId=%s, status=%s]", id, kind, action,
+                targetId, status);
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getKind() {
+        return kind;
+    }
+
+    public void setKind(String kind) {
+        this.kind = kind;
+    }
+
+    public String getAction() {
+        return action;
+    }
+
+    public void setAction(String action) {
+        this.action = action;
+    }
+
+    public Long getTargetId() {
+        return targetId;
+    }
+
+    public void setTargetId(Long targetId) {
+        this.targetId = targetId;
+    }
+
+    public Long getExpectedVersion() {
+        return expectedVersion;
+    }
+
+    public void setExpectedVersion(Long expectedVersion) {
+        this.expectedVersion = expectedVersion;
+    }
+
+    public JsonNode getPayload() {
+        return payload;
+    }
+
+    public void setPayload(JsonNode payload) {
+        this.payload = payload;
+    }
+
+    public OperationStatus getStatus() {
+        return status;
+    }
+
+    public void setStatus(OperationStatus status) {
+        this.status = status;
+    }
+
+    public JsonNode getResult() {
+        return result;
+    }
+
+    public void setResult(JsonNode result) {
+        this.result = result;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public void setError(String error) {
+        this.error = error;
+    }
+
+    public String getField() {
+        return field;
+    }
+
+    public void setField(String field) {
+        this.field = field;
+    }
+
+    public int getAttempts() {
+        return attempts;
+    }
+
+    public void setAttempts(int attempts) {
+        this.attempts = attempts;
+    }
+
+    public String getOwner() {
+        return owner;
+    }
+
+    public void setOwner(String owner) {
+        this.owner = owner;
+    }
+
+    public Long getLeaseUntil() {
+        return leaseUntil;
+    }
+
+    public void setLeaseUntil(Long leaseUntil) {
+        this.leaseUntil = leaseUntil;
+    }
+
+    public Long getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(Long createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    public Long getStartedAt() {
+        return startedAt;
+    }
+
+    public void setStartedAt(Long startedAt) {
+        this.startedAt = startedAt;
+    }
+
+    public Long getFinishedAt() {
+        return finishedAt;
+    }
+
+    public void setFinishedAt(Long finishedAt) {
+        this.finishedAt = finishedAt;
+    }
+}
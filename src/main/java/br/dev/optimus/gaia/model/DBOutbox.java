@@ -0,0 +1,136 @@
+package br.dev.optimus.gaia.model;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.SequenceGenerator;
+import jakarta.persistence.Table;
+
+@Entity
+@Table(name = "outbox", schema = "gaia", indexes = {
+        @Index(columnList = "next_attempt_at, id"),
+        @Index(columnList = "kind, namespace, name") })
+public class DBOutbox {
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "outbox_seq")
+    @SequenceGenerator(name = "outbox_seq", sequenceName = "outbox_seq", schema = "gaia", allocationSize = 50)
+    private Long id;
+    private String kind;
+    private String namespace;
+    private String name;
+    private String action;
+    @Column(columnDefinition = "text")
+    private String payload;
+    private int attempts;
+    @Column(name = "last_error", columnDefinition = "text")
+    @JsonProperty("last_error")
+    private String lastError;
+    @Column(name = "created_at")
+    @JsonProperty("created_at")
+    private Long createdAt;
+    @Column(name = "next_attempt_at")
+    @JsonProperty("next_attempt_at")
+    private Long nextAttemptAt;
+
+    public DBOutbox() {
+    }
+
+    public DBOutbox(String kind, String namespace, String name, String action, String payload) {
+        this.kind = kind;
+        this.namespace = namespace;
+        this.name = name;
+        this.action = action;
+        this.payload = payload;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Outbox [id=%s, kind=%s, namespace=%s, name=%s, action=%s, attempts=%s]", id, kind,
+                namespace, name, action, attempts);
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getKind() {
+        return kind;
+    }
+
+    public void setKind(String kind) {
+        this.kind = kind;
+    }
+
+    public String getNamespace() {
+        return namespace;
+    }
+
+    public void setNamespace(String namespace) {
+        this.namespace = namespace;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public String getAction() {
+        return action;
+    }
+
+    public void setAction(String action) {
+        this.action = action;
+    }
+
+    public String getPayload() {
+        return payload;
+    }
+
+    public void setPayload(String payload) {
+        this.payload = payload;
+    }
+
+    public int getAttempts() {
+        return attempts;
+    }
+
+    public void setAttempts(int attempts) {
+        this.attempts = attempts;
+    }
+
+    public String getLastError() {
+        return lastError;
+    }
+
+    public void setLastError(String lastError) {
+        this.lastError = lastError;
+    }
+
+    public Long getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(Long createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    public Long getNextAttemptAt() {
+        return nextAttemptAt;
+    }
+
+    public void setNextAttemptAt(Long nextAttemptAt) {
+        this.nextAttemptAt = nextAttemptAt;
+    }
+}
@@ -1,26 +1,38 @@
 package br.dev.optimus.gaia.model;
 
 import java.util.HashMap;
+import java.util.Map;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import org.hibernate.annotations.JdbcTypeCode;
 import org.hibernate.type.SqlTypes;
 
 import com.fasterxml.jackson.annotation.JsonProperty;
 
 import br.dev.optimus.gaia.AccessMode;
+import br.dev.optimus.gaia.sync.Fingerprint;
+import jakarta.persistence.Cacheable;
+import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.PrePersist;
+import jakarta.persistence.PreUpdate;
+import jakarta.persistence.SequenceGenerator;
 import jakarta.persistence.Table;
-import jakarta.persistence.UniqueConstraint;
+import jakarta.persistence.Version;
 
-@Table(name = "persistent_volumes", schema = "gaia", uniqueConstraints = {
-        @UniqueConstraint(columnNames = { "namespace", "name" }) })
+@Table(name = "persistent_volumes", schema = "gaia")
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "gaia.persistent_volumes")
 public class DBPersistentVolume {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "persistent_volumes_seq")
+    @SequenceGenerator(name = "persistent_volumes_seq", sequenceName = "persistent_volumes_seq", schema = "gaia",
+            allocationSize = 50)
     private long id;
     private String namespace;
     private String name;
@@ -36,6 +48,13 @@ public class DBPersistentVolume {
     private long updatedAt;
     @JsonProperty("deleted_at")
     private Long deletedAt;
+    @Column(name = "resource_version")
+    @JsonProperty("resource_version")
+    private String resourceVersion;
+    private String uid;
+    private Long fingerprint;
+    @Version
+    private long version;
 
     public static class Builder {
         private String namespace;
@@ -172,7 +191,45 @@ public class DBPersistentVolume {
         return deletedAt;
     }
 
-    public void setDeletedAt(long deletedAt) {
+    public void setDeletedAt(Long deletedAt) {
         this.deletedAt = deletedAt;
     }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public void setVersion(long version) {
+        this.version = version;
+    }
+
+    public String getResourceVersion() {
+        return resourceVersion;
+    }
+
+    public void setResourceVersion(String resourceVersion) {
+        this.resourceVersion = resourceVersion;
+    }
+
+    public String getUid() {
+        return uid;
+    }
+
+    public void setUid(String uid) {
+        this.uid = uid;
+    }
+
+    public Long getFingerprint() {
+        return fingerprint;
+    }
+
+    public static long fingerprint(String capacity, AccessMode accessMode, String type, Map<String, String> configs) {
+        return Fingerprint.of(capacity, accessMode, type, configs);
+    }
+
+    @PrePersist
+    @PreUpdate
+    void updateFingerprint() {
+        this.fingerprint = fingerprint(capacity, accessMode, type, configs);
+    }
 }
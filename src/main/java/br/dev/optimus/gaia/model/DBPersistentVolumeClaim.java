@@ -1,22 +1,33 @@
 package br.dev.optimus.gaia.model;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+
 import com.fasterxml.jackson.annotation.JsonProperty;
 
 import br.dev.optimus.gaia.AccessMode;
+import br.dev.optimus.gaia.sync.Fingerprint;
+import jakarta.persistence.Cacheable;
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.PrePersist;
+import jakarta.persistence.PreUpdate;
+import jakarta.persistence.SequenceGenerator;
 import jakarta.persistence.Table;
-import jakarta.persistence.UniqueConstraint;
+import jakarta.persistence.Version;
 
 @Entity
-@Table(name = "persistent_volume_claims", schema = "gaia", uniqueConstraints = {
-        @UniqueConstraint(columnNames = { "namespace", "name" }) })
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "gaia.persistent_volume_claims")
+@Table(name = "persistent_volume_claims", schema = "gaia")
 public class DBPersistentVolumeClaim {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "persistent_volume_claims_seq")
+    @SequenceGenerator(name = "persistent_volume_claims_seq", sequenceName = "persistent_volume_claims_seq",
+            schema = "gaia", allocationSize = 50)
     private long id;
     private String namespace;
     private String name;
@@ -36,6 +47,13 @@ public class DBPersistentVolumeClaim {
     @Column(name = "deleted_at")
     @JsonProperty("deleted_at")
     private Long deletedAt;
+    @Column(name = "resource_version")
+    @JsonProperty("resource_version")
+    private String resourceVersion;
+    private String uid;
+    private Long fingerprint;
+    @Version
+    private long version;
 
     public static class Builder {
         private String namespace;
@@ -161,4 +179,41 @@ public class DBPersistentVolumeClaim {
         this.deletedAt = deletedAt;
     }
 
+    public long getVersion() {
+        return version;
+    }
+
+    public void setVersion(long version) {
+        this.version = version;
+    }
+
+    public String getResourceVersion() {
+        return resourceVersion;
+    }
+
+    public void setResourceVersion(String resourceVersion) {
+        this.resourceVersion = resourceVersion;
+    }
+
+    public String getUid() {
+        return uid;
+    }
+
+    public void setUid(String uid) {
+        this.uid = uid;
+    }
+
+    public Long getFingerprint() {
+        return fingerprint;
+    }
+
+    public static long fingerprint(String capacity, AccessMode accessMode, String volumeName) {
+        return Fingerprint.of(capacity, accessMode, volumeName);
+    }
+
+    @PrePersist
+    @PreUpdate
+    void updateFingerprint() {
+        this.fingerprint = fingerprint(capacity, accessMode, volumeName);
+    }
 }
@@ -1,27 +1,39 @@
 package br.dev.optimus.gaia.model;
 
 import java.util.Base64;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+
 import com.fasterxml.jackson.annotation.JsonProperty;
 
 import br.dev.optimus.gaia.model.builder.DBSecretBuilder;
+import br.dev.optimus.gaia.sync.Fingerprint;
 import io.fabric8.kubernetes.api.model.Secret;
 import io.fabric8.kubernetes.api.model.SecretBuilder;
+import jakarta.persistence.Cacheable;
+import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.PrePersist;
+import jakarta.persistence.PreUpdate;
+import jakarta.persistence.SequenceGenerator;
 import jakarta.persistence.Table;
-import jakarta.persistence.UniqueConstraint;
+import jakarta.persistence.Version;
 
 @Entity
-@Table(name = "secrets", schema = "gaia", uniqueConstraints = {
-        @UniqueConstraint(columnNames = { "namespace", "name" }) })
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "gaia.secrets")
+@Table(name = "secrets", schema = "gaia")
 public class DBSecret {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "secrets_seq")
+    @SequenceGenerator(name = "secrets_seq", sequenceName = "secrets_seq", schema = "gaia", allocationSize = 50)
     private Long id;
     private String namespace;
     private String name;
@@ -32,6 +44,13 @@ public class DBSecret {
     private Long updatedAt;
     @JsonProperty("deleted_at")
     private Long deletedAt;
+    @Column(name = "resource_version")
+    @JsonProperty("resource_version")
+    private String resourceVersion;
+    private String uid;
+    private Long fingerprint;
+    @Version
+    private long version;
 
     public DBSecret() {
     }
@@ -128,4 +147,42 @@ public class DBSecret {
     public void setDeletedAt(Long deletedAt) {
         this.deletedAt = deletedAt;
     }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public void setVersion(long version) {
+        this.version = version;
+    }
+
+    public String getResourceVersion() {
+        return resourceVersion;
+    }
+
+    public void setResourceVersion(String resourceVersion) {
+        this.resourceVersion = resourceVersion;
+    }
+
+    public String getUid() {
+        return uid;
+    }
+
+    public void setUid(String uid) {
+        this.uid = uid;
+    }
+
+    public Long getFingerprint() {
+        return fingerprint;
+    }
+
+    public static long fingerprint(Collection<String> keys) {
+        return Fingerprint.of(keys);
+    }
+
+    @PrePersist
+    @PreUpdate
+    void updateFingerprint() {
+        this.fingerprint = fingerprint(keys);
+    }
 }
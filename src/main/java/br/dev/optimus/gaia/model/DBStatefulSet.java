@@ -2,7 +2,11 @@ package br.dev.optimus.gaia.model;
 
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.stream.Stream;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import org.hibernate.annotations.JdbcTypeCode;
 import org.hibernate.type.SqlTypes;
 
@@ -12,19 +16,26 @@ import br.dev.optimus.gaia.model.builder.DBStatefulSetBuilder;
 import io.fabric8.kubernetes.api.model.PodSpecBuilder;
 import io.fabric8.kubernetes.api.model.apps.StatefulSet;
 import io.fabric8.kubernetes.api.model.apps.StatefulSetBuilder;
+import jakarta.persistence.Cacheable;
 import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.PrePersist;
+import jakarta.persistence.PreUpdate;
+import jakarta.persistence.SequenceGenerator;
 import jakarta.persistence.Table;
-import jakarta.persistence.UniqueConstraint;
+import jakarta.persistence.Version;
 
 @Entity
-@Table(name = "statefulsets", schema = "gaia", uniqueConstraints = @UniqueConstraint(columnNames = { "namespace",
-        "name" }))
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "gaia.statefulsets")
+@Table(name = "statefulsets", schema = "gaia")
 public class DBStatefulSet {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "statefulsets_seq")
+    @SequenceGenerator(name = "statefulsets_seq", sequenceName = "statefulsets_seq", schema = "gaia",
+            allocationSize = 50)
     private Long id;
     private String namespace;
     private String name;
@@ -35,12 +46,16 @@ public class DBStatefulSet {
     private List<DBContainer> containers;
     @JdbcTypeCode(SqlTypes.JSON)
     private List<DBVolume> volumes;
+    @JdbcTypeCode(SqlTypes.JSON)
+    private List<String> images;
     @JsonProperty("created_at")
     private Long createdAt;
     @JsonProperty("updated_at")
     private Long updatedAt;
     @JsonProperty("deleted_at")
     private Long deletedAt;
+    @Version
+    private long version;
 
     public DBStatefulSet() {
     }
@@ -115,6 +130,10 @@ public class DBStatefulSet {
         this.volumes = volumes;
     }
 
+    public List<String> getImages() {
+        return images;
+    }
+
     public Long getCreatedAt() {
         return createdAt;
     }
@@ -139,6 +158,14 @@ public class DBStatefulSet {
         this.deletedAt = deletedAt;
     }
 
+    public long getVersion() {
+        return version;
+    }
+
+    public void setVersion(long version) {
+        this.version = version;
+    }
+
     public StatefulSet statefulSet() {
         var specBuilder = new PodSpecBuilder();
         if (initContainers != null) {
@@ -169,4 +196,17 @@ public class DBStatefulSet {
                 .endSpec()
                 .build();
     }
+
+    // copied out of the containers so listings can show the images without reading the specs
+    @PrePersist
+    @PreUpdate
+    void updateImages() {
+        this.images = Stream.of(initContainers, containers)
+                .filter(Objects::nonNull)
+                .flatMap(List::stream)
+                .map(DBContainer::getImage)
+                .filter(Objects::nonNull)
+                .distinct()
+                .toList();
+    }
 }
@@ -0,0 +1,85 @@
+package br.dev.optimus.gaia.model;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.SequenceGenerator;
+import jakarta.persistence.Table;
+import jakarta.persistence.UniqueConstraint;
+
+@Entity
+@Table(name = "sync_checkpoints", schema = "gaia", uniqueConstraints = {
+        @UniqueConstraint(columnNames = { "kind", "namespace" }) })
+public class DBSyncCheckpoint {
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "sync_checkpoints_seq")
+    @SequenceGenerator(name = "sync_checkpoints_seq", sequenceName = "sync_checkpoints_seq", schema = "gaia",
+            allocationSize = 50)
+    private Long id;
+    private String kind;
+    private String namespace;
+    @Column(name = "resource_version")
+    @JsonProperty("resource_version")
+    private String resourceVersion;
+    @Column(name = "updated_at")
+    @JsonProperty("updated_at")
+    private Long updatedAt;
+
+    public DBSyncCheckpoint() {
+    }
+
+    public DBSyncCheckpoint(String kind, String namespace) {
+        this.kind = kind;
+        this.namespace = namespace;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("SyncCheckpoint [kind=%s, namespace=%s, resourceVersion=%s]", kind, namespace,
+                resourceVersion);
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getKind() {
+        return kind;
+    }
+
+    public void setKind(String kind) {
+        this.kind = kind;
+    }
+
+    public String getNamespace() {
+        return namespace;
+    }
+
+    public void setNamespace(String namespace) {
+        this.namespace = namespace;
+    }
+
+    public String getResourceVersion() {
+        return resourceVersion;
+    }
+
+    public void setResourceVersion(String resourceVersion) {
+        this.resourceVersion = resourceVersion;
+    }
+
+    public Long getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void setUpdatedAt(Long updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+}
@@ -1,20 +1,59 @@
 package br.dev.optimus.gaia.repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import br.dev.optimus.gaia.model.DBConfigMap;
+import br.dev.optimus.gaia.sync.SyncRow;
+import jakarta.persistence.QueryHint;
 
 @Repository
 public interface ConfigMapRepository extends JpaRepository<DBConfigMap, Long> {
-    boolean existsByNamespaceAndName(String namespace, String name);
+    boolean existsByNamespaceAndNameAndDeletedAtIsNull(String namespace, String name);
 
     List<DBConfigMap> findByNamespace(String namespace);
 
-    Optional<DBConfigMap> findByNamespaceAndName(String namespace, String name);
+    @QueryHints({ @QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"),
+            @QueryHint(name = HibernateHints.HINT_CACHE_REGION, value = "gaia.configmaps.lookup") })
+    Optional<DBConfigMap> findByNamespaceAndNameAndDeletedAtIsNull(String namespace, String name);
+
+    Optional<DBConfigMap> findByIdAndDeletedAtIsNull(Long id);
+
+    List<DBConfigMap> findByNamespaceAndNameInAndDeletedAtIsNull(String namespace, Collection<String> names);
 
     List<DBConfigMap> findByDeletedAtIsNull();
+
+    List<DBConfigMap> findByDeletedAtIsNullAndIdGreaterThanOrderByIdAsc(Long after, Limit limit);
+
+    // rows written since the list started may be missing from it, so they are never swept
+    @Query("select c.id as id, c.name as name from DBConfigMap c "
+            + "where c.namespace = :namespace and c.deletedAt is null and c.updatedAt < :before")
+    List<SyncRow> findLive(@Param("namespace") String namespace, @Param("before") Long before);
+
+    @Modifying
+    @Transactional
+    @Query("update versioned DBConfigMap c set c.deletedAt = :deletedAt "
+            + "where c.id in :ids and c.deletedAt is null")
+    int markDeleted(@Param("ids") Collection<Long> ids, @Param("deletedAt") Long deletedAt);
+
+    @Query("select c.id from DBConfigMap c where c.deletedAt < :before order by c.id")
+    List<Long> findTombstones(@Param("before") Long before, Limit limit);
+
+    @Query("select c.version from DBConfigMap c where c.id = :id")
+    Optional<Long> findVersionById(@Param("id") Long id);
+
+    // locks the row until the transaction ends, conditional writes check the version with it
+    @Query(value = "select version from gaia.configmaps where id = :id for update", nativeQuery = true)
+    Optional<Long> lockVersion(@Param("id") Long id);
 }
@@ -0,0 +1,40 @@
+package br.dev.optimus.gaia.repository;
+
+import java.util.Collection;
+import java.util.List;
+
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import br.dev.optimus.gaia.OperationStatus;
+import br.dev.optimus.gaia.model.DBOperation;
+
+@Repository
+public interface OperationRepository extends JpaRepository<DBOperation, Long> {
+    List<DBOperation> findByStatusOrderByIdAsc(OperationStatus status, Limit limit);
+
+    @Modifying
+    @Transactional
+    @Query("update DBOperation o set o.status = :to, o.startedAt = :startedAt, o.attempts = o.attempts + 1, "
+            + "o.owner = :owner, o.leaseUntil = :leaseUntil where o.id = :id and o.status = :from")
+    int claim(@Param("id") Long id, @Param("from") OperationStatus from, @Param("to") OperationStatus to,
+            @Param("startedAt") Long startedAt, @Param("owner") String owner, @Param("leaseUntil") Long leaseUntil);
+
+    @Modifying
+    @Transactional
+    @Query("update DBOperation o set o.leaseUntil = :leaseUntil "
+            + "where o.id in :ids and o.status = :status and o.owner = :owner")
+    int renew(@Param("ids") Collection<Long> ids, @Param("status") OperationStatus status,
+            @Param("owner") String owner, @Param("leaseUntil") Long leaseUntil);
+
+    @Modifying
+    @Transactional
+    @Query("update DBOperation o set o.status = :to, o.owner = null, o.leaseUntil = null "
+            + "where o.status = :from and (o.leaseUntil is null or o.leaseUntil < :now)")
+    int reclaim(@Param("from") OperationStatus from, @Param("to") OperationStatus to, @Param("now") Long now);
+}
@@ -0,0 +1,28 @@
+package br.dev.optimus.gaia.repository;
+
+import java.util.List;
+
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import br.dev.optimus.gaia.model.DBOutbox;
+
+@Repository
+public interface OutboxRepository extends JpaRepository<DBOutbox, Long> {
+    List<DBOutbox> findByNextAttemptAtLessThanEqualOrderByIdAsc(Long now, Limit limit);
+
+    @Modifying
+    @Query("delete from DBOutbox o where o.kind = :kind and o.namespace = :namespace and o.name = :name")
+    int deleteEntries(@Param("kind") String kind, @Param("namespace") String namespace, @Param("name") String name);
+
+    @Modifying
+    @Transactional
+    @Query("update DBOutbox o set o.attempts = o.attempts + 1, o.lastError = :error, o.nextAttemptAt = :next "
+            + "where o.id = :id")
+    int retry(@Param("id") Long id, @Param("error") String error, @Param("next") Long next);
+}
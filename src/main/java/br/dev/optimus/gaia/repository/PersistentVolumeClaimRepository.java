@@ -1,19 +1,58 @@
 package br.dev.optimus.gaia.repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import br.dev.optimus.gaia.model.DBPersistentVolumeClaim;
+import br.dev.optimus.gaia.sync.SyncRow;
+import jakarta.persistence.QueryHint;
 
 @Repository
 public interface PersistentVolumeClaimRepository extends JpaRepository<DBPersistentVolumeClaim, Long> {
-    boolean existsByNamespaceAndName(String namespace, String name);
+    boolean existsByNamespaceAndNameAndDeletedAtIsNull(String namespace, String name);
 
     List<DBPersistentVolumeClaim> findByDeletedAtIsNull();
 
-    Optional<DBPersistentVolumeClaim> findByNamespaceAndName(String namespace, String name);
+    List<DBPersistentVolumeClaim> findByDeletedAtIsNullAndIdGreaterThanOrderByIdAsc(Long after, Limit limit);
 
+    @QueryHints({ @QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"),
+            @QueryHint(name = HibernateHints.HINT_CACHE_REGION, value = "gaia.persistent_volume_claims.lookup") })
+    Optional<DBPersistentVolumeClaim> findByNamespaceAndNameAndDeletedAtIsNull(String namespace, String name);
+
+    Optional<DBPersistentVolumeClaim> findByIdAndDeletedAtIsNull(long id);
+
+    List<DBPersistentVolumeClaim> findByNamespaceAndNameInAndDeletedAtIsNull(String namespace,
+            Collection<String> names);
+
+    // rows written since the list started may be missing from it, so they are never swept
+    @Query("select p.id as id, p.name as name from DBPersistentVolumeClaim p "
+            + "where p.namespace = :namespace and p.deletedAt is null and p.updatedAt < :before")
+    List<SyncRow> findLive(@Param("namespace") String namespace, @Param("before") Long before);
+
+    @Modifying
+    @Transactional
+    @Query("update versioned DBPersistentVolumeClaim p set p.deletedAt = :deletedAt "
+            + "where p.id in :ids and p.deletedAt is null")
+    int markDeleted(@Param("ids") Collection<Long> ids, @Param("deletedAt") Long deletedAt);
+
+    @Query("select p.id from DBPersistentVolumeClaim p where p.deletedAt < :before order by p.id")
+    List<Long> findTombstones(@Param("before") Long before, Limit limit);
+
+    @Query("select p.version from DBPersistentVolumeClaim p where p.id = :id")
+    Optional<Long> findVersionById(@Param("id") long id);
+
+    // locks the row until the transaction ends, conditional writes check the version with it
+    @Query(value = "select version from gaia.persistent_volume_claims where id = :id for update", nativeQuery = true)
+    Optional<Long> lockVersion(@Param("id") long id);
 }
@@ -1,18 +1,57 @@
 package br.dev.optimus.gaia.repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
 import br.dev.optimus.gaia.model.DBSecret;
+import br.dev.optimus.gaia.sync.SyncRow;
+import jakarta.persistence.QueryHint;
 
 public interface SecretRepository extends JpaRepository<DBSecret, Long> {
-    boolean existsByNamespaceAndName(String namespace, String name);
+    boolean existsByNamespaceAndNameAndDeletedAtIsNull(String namespace, String name);
 
     List<DBSecret> findByNamespace(String namespace);
 
-    Optional<DBSecret> findByNamespaceAndName(String namespace, String name);
+    @QueryHints({ @QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"),
+            @QueryHint(name = HibernateHints.HINT_CACHE_REGION, value = "gaia.secrets.lookup") })
+    Optional<DBSecret> findByNamespaceAndNameAndDeletedAtIsNull(String namespace, String name);
+
+    Optional<DBSecret> findByIdAndDeletedAtIsNull(Long id);
+
+    List<DBSecret> findByNamespaceAndNameInAndDeletedAtIsNull(String namespace, Collection<String> names);
 
     List<DBSecret> findByDeletedAtIsNull();
+
+    List<DBSecret> findByDeletedAtIsNullAndIdGreaterThanOrderByIdAsc(Long after, Limit limit);
+
+    // rows written since the list started may be missing from it, so they are never swept
+    @Query("select s.id as id, s.name as name from DBSecret s "
+            + "where s.namespace = :namespace and s.deletedAt is null and s.updatedAt < :before")
+    List<SyncRow> findLive(@Param("namespace") String namespace, @Param("before") Long before);
+
+    @Modifying
+    @Transactional
+    @Query("update versioned DBSecret s set s.deletedAt = :deletedAt "
+            + "where s.id in :ids and s.deletedAt is null")
+    int markDeleted(@Param("ids") Collection<Long> ids, @Param("deletedAt") Long deletedAt);
+
+    @Query("select s.id from DBSecret s where s.deletedAt < :before order by s.id")
+    List<Long> findTombstones(@Param("before") Long before, Limit limit);
+
+    @Query("select s.version from DBSecret s where s.id = :id")
+    Optional<Long> findVersionById(@Param("id") Long id);
+
+    // locks the row until the transaction ends, conditional writes check the version with it
+    @Query(value = "select version from gaia.secrets where id = :id for update", nativeQuery = true)
+    Optional<Long> lockVersion(@Param("id") Long id);
 }
@@ -0,0 +1,9 @@
+package br.dev.optimus.gaia.repository;
+
+import java.util.List;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+public record StatefulSetOverview(Long id, String namespace, String name, Integer replicas, List<String> images,
+        @JsonProperty("created_at") Long createdAt, @JsonProperty("updated_at") Long updatedAt) {
+}
@@ -1,18 +1,61 @@
 package br.dev.optimus.gaia.repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 
 import br.dev.optimus.gaia.model.DBStatefulSet;
+import jakarta.persistence.QueryHint;
 
 public interface StatefulSetRepository extends JpaRepository<DBStatefulSet, Long> {
-    boolean existsByNamespaceAndName(String namespace, String name);
+    boolean existsByNamespaceAndNameAndDeletedAtIsNull(String namespace, String name);
 
     List<DBStatefulSet> findByNamespace(String namespace);
 
     List<DBStatefulSet> findByDeletedAtIsNull();
 
-    Optional<DBStatefulSet> findByNamespaceAndName(String namespace, String name);
+    List<DBStatefulSet> findByDeletedAtIsNullAndIdGreaterThanOrderByIdAsc(Long after, Limit limit);
+
+    // selects the columns directly, the container and volume specs are never read
+    @Query("select new br.dev.optimus.gaia.repository.StatefulSetOverview(s.id, s.namespace, s.name, s.replicas, "
+            + "s.images, s.createdAt, s.updatedAt) from DBStatefulSet s "
+            + "where s.deletedAt is null and s.id > :after order by s.id")
+    List<StatefulSetOverview> findOverviews(@Param("after") Long after, Limit limit);
+
+    @QueryHints({ @QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"),
+            @QueryHint(name = HibernateHints.HINT_CACHE_REGION, value = "gaia.statefulsets.lookup") })
+    Optional<DBStatefulSet> findByNamespaceAndNameAndDeletedAtIsNull(String namespace, String name);
+
+    List<DBStatefulSet> findByNamespaceAndNameInAndDeletedAtIsNull(String namespace, Collection<String> names);
+
+    @Query("select s.id from DBStatefulSet s where s.deletedAt < :before order by s.id")
+    List<Long> findTombstones(@Param("before") Long before, Limit limit);
+
+    @Query("select s.version from DBStatefulSet s where s.id = :id")
+    Optional<Long> findVersionById(@Param("id") Long id);
+
+    // locks the row until the transaction ends, conditional writes check the version with it
+    @Query(value = "select version from gaia.statefulsets where id = :id for update", nativeQuery = true)
+    Optional<Long> lockVersion(@Param("id") Long id);
+
+    // filter is a jsonb array matched with @> so the GIN indexes in schema-postgresql.sql are used
+    @Query(value = "select s.id as id, s.namespace as namespace, s.name as name, s.replicas as replicas "
+            + "from gaia.statefulsets s where s.deleted_at is null and s.id > :after "
+            + "and (s.containers @> cast(:filter as jsonb) or s.init_containers @> cast(:filter as jsonb)) "
+            + "order by s.id limit :limit", nativeQuery = true)
+    List<StatefulSetSummary> findByContainer(@Param("filter") String filter, @Param("after") long after,
+            @Param("limit") int limit);
+
+    @Query(value = "select s.id as id, s.namespace as namespace, s.name as name, s.replicas as replicas "
+            + "from gaia.statefulsets s where s.deleted_at is null and s.id > :after "
+            + "and s.volumes @> cast(:filter as jsonb) order by s.id limit :limit", nativeQuery = true)
+    List<StatefulSetSummary> findByVolume(@Param("filter") String filter, @Param("after") long after,
+            @Param("limit") int limit);
 }
@@ -0,0 +1,11 @@
+package br.dev.optimus.gaia.repository;
+
+public interface StatefulSetSummary {
+    Long getId();
+
+    String getNamespace();
+
+    String getName();
+
+    Integer getReplicas();
+}
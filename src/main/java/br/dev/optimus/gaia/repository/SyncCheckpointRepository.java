@@ -0,0 +1,11 @@
+package br.dev.optimus.gaia.repository;
+
+import java.util.Optional;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import br.dev.optimus.gaia.model.DBSyncCheckpoint;
+
+public interface SyncCheckpointRepository extends JpaRepository<DBSyncCheckpoint, Long> {
+    Optional<DBSyncCheckpoint> findByKindAndNamespace(String kind, String namespace);
+}
@@ -0,0 +1,8 @@
+package br.dev.optimus.gaia.request;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+public final class BatchRequest {
+    public record Item(String kind, JsonNode spec) {
+    }
+}
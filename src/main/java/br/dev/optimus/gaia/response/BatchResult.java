@@ -0,0 +1,14 @@
+package br.dev.optimus.gaia.response;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record BatchResult(int index, String kind, int status, Object data, String error, String field) {
+    public static BatchResult ok(int index, String kind, Object data) {
+        return new BatchResult(index, kind, 200, data, null, null);
+    }
+
+    public static BatchResult failed(int index, String kind, int status, String error, String field) {
+        return new BatchResult(index, kind, status, null, error, field);
+    }
+}
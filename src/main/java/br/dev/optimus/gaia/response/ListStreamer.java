@@ -0,0 +1,94 @@
+package br.dev.optimus.gaia.response;
+
+import java.util.List;
+import java.util.function.ToLongFunction;
+
+import org.hibernate.Session;
+import org.springframework.core.env.Environment;
+import org.springframework.data.domain.Limit;
+import org.springframework.orm.jpa.EntityManagerHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import br.dev.optimus.gaia.exception.BadRequestException;
+import jakarta.persistence.EntityManagerFactory;
+
+@Component
+public class ListStreamer {
+    private final ObjectMapper mapper;
+    private final EntityManagerFactory entityManagerFactory;
+    private final int pageSize;
+
+    public ListStreamer(ObjectMapper mapper, EntityManagerFactory entityManagerFactory, Environment env) {
+        this.mapper = mapper;
+        this.entityManagerFactory = entityManagerFactory;
+        this.pageSize = env.getProperty("gaia.api.page-size", Integer.class, 500);
+    }
+
+    public interface Keyset<T> {
+        List<T> page(Long after, Limit limit);
+    }
+
+    // walks the rows by id and writes them as the plain array existing clients read. Only a paged request
+    // (after or limit) gets {"items": [...], "next": id}, next is the after of the following page or null once
+    // the rows are exhausted. The repositories read through an entity manager of the stream's own, only one
+    // page is held at a time and it is cleared after each one
+    public <T> StreamingResponseBody stream(Keyset<T> keyset, ToLongFunction<T> id, Long after, Integer limit) {
+        if (limit != null && limit <= 0) {
+            throw new BadRequestException("limit must be greater than zero", "limit");
+        }
+        var start = after == null ? 0L : after;
+        var max = limit == null ? Long.MAX_VALUE : limit;
+        var paged = after != null || limit != null;
+        return out -> {
+            var previous = TransactionSynchronizationManager.hasResource(entityManagerFactory)
+                    ? TransactionSynchronizationManager.unbindResource(entityManagerFactory)
+                    : null;
+            var entityManager = entityManagerFactory.createEntityManager();
+            entityManager.unwrap(Session.class).setDefaultReadOnly(true);
+            TransactionSynchronizationManager.bindResource(entityManagerFactory,
+                    new EntityManagerHolder(entityManager));
+            try (var generator = mapper.getFactory().createGenerator(out)) {
+                if (paged) {
+                    generator.writeStartObject();
+                    generator.writeArrayFieldStart("items");
+                } else {
+                    generator.writeStartArray();
+                }
+                Long next = null;
+                var cursor = start;
+                var remaining = max;
+                while (remaining > 0) {
+                    var size = (int) Math.min(pageSize, remaining);
+                    var rows = keyset.page(cursor, Limit.of(size));
+                    for (var row : rows) {
+                        generator.writeObject(row);
+                    }
+                    generator.flush();
+                    entityManager.clear();
+                    if (rows.size() < size) {
+                        next = null;
+                        break;
+                    }
+                    cursor = id.applyAsLong(rows.get(rows.size() - 1));
+                    remaining -= rows.size();
+                    next = cursor;
+                }
+                generator.writeEndArray();
+                if (paged) {
+                    generator.writeObjectField("next", next);
+                    generator.writeEndObject();
+                }
+            } finally {
+                TransactionSynchronizationManager.unbindResource(entityManagerFactory);
+                entityManager.close();
+                if (previous != null) {
+                    TransactionSynchronizationManager.bindResource(entityManagerFactory, previous);
+                }
+            }
+        };
+    }
+}
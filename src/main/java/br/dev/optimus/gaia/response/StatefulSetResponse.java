@@ -0,0 +1,10 @@
+package br.dev.optimus.gaia.response;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import br.dev.optimus.gaia.model.DBStatefulSet;
+
+// diff is the merge patch sent to the cluster, empty when nothing changed
+public record StatefulSetResponse(DBStatefulSet data, JsonNode diff) {
+
+}
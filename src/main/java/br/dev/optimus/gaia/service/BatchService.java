@@ -0,0 +1,267 @@
+package br.dev.optimus.gaia.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import br.dev.optimus.gaia.exception.BadRequestException;
+import br.dev.optimus.gaia.request.BatchRequest;
+import br.dev.optimus.gaia.request.ConfigMapRequest;
+import br.dev.optimus.gaia.request.PersistentVolumeClaimCreateRequest;
+import br.dev.optimus.gaia.request.PersistentVolumeCreateRequest;
+import br.dev.optimus.gaia.request.SecretRequest;
+import br.dev.optimus.gaia.request.StatefulSetRequest;
+import br.dev.optimus.gaia.response.BatchResult;
+import br.dev.optimus.gaia.sync.SyncKey;
+import io.fabric8.kubernetes.api.model.ConfigMap;
+import io.fabric8.kubernetes.api.model.PersistentVolume;
+import io.fabric8.kubernetes.api.model.PersistentVolumeClaim;
+import io.fabric8.kubernetes.api.model.Secret;
+import io.fabric8.kubernetes.api.model.apps.StatefulSet;
+import io.fabric8.kubernetes.client.KubernetesClientException;
+
+@Service
+public class BatchService {
+    // kinds in the same stage do not depend on each other and are applied together
+    private static final List<List<String>> STAGES = List.of(
+            List.of("pv"),
+            List.of("pvc"),
+            List.of("configmap", "secret"),
+            List.of("statefulset"));
+
+    private final PersistentVolumeService pvService;
+    private final PersistentVolumeClaimService pvcService;
+    private final ConfigMapService configMapService;
+    private final SecretService secretService;
+    private final StatefulSetService statefulSetService;
+    private final InformerService informers;
+    private final ObjectMapper mapper;
+    private final int concurrency;
+    private final Logger log = LoggerFactory.getLogger(BatchService.class);
+
+    public BatchService(PersistentVolumeService pvService, PersistentVolumeClaimService pvcService,
+            ConfigMapService configMapService, SecretService secretService, StatefulSetService statefulSetService,
+            InformerService informers, ObjectMapper mapper, Environment env) {
+        this.pvService = pvService;
+        this.pvcService = pvcService;
+        this.configMapService = configMapService;
+        this.secretService = secretService;
+        this.statefulSetService = statefulSetService;
+        this.informers = informers;
+        this.mapper = mapper;
+        this.concurrency = env.getProperty("gaia.batch.concurrency", Integer.class, 16);
+    }
+
+    private record Staged<R, D>(int index, R request, D data) {
+    }
+
+    public List<BatchResult> apply(List<BatchRequest.Item> items) {
+        var results = new BatchResult[items.size()];
+        var kinds = new HashMap<String, List<Integer>>();
+        for (int i = 0; i < items.size(); i++) {
+            var kind = items.get(i).kind();
+            if (kind == null) {
+                results[i] = BatchResult.failed(i, null, 400, "kind is required", "kind");
+                continue;
+            }
+            if (STAGES.stream().noneMatch(stage -> stage.contains(kind))) {
+                results[i] = BatchResult.failed(i, kind, 400, "unknown kind", "kind");
+                continue;
+            }
+            kinds.computeIfAbsent(kind, k -> new ArrayList<>()).add(i);
+        }
+        log.info("applying batch of {} items", items.size());
+        try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            var permits = new Semaphore(Math.max(concurrency, 1));
+            String failed = null;
+            for (var stage : STAGES) {
+                var present = stage.stream().filter(kinds::containsKey).toList();
+                // later stages may reference any item of a failed stage, so none of them is applied
+                if (failed != null) {
+                    for (var kind : present) {
+                        for (var index : kinds.get(kind)) {
+                            results[index] = BatchResult.failed(index, kind, 424,
+                                    "not applied, a " + failed + " item of this batch failed", null);
+                        }
+                    }
+                    continue;
+                }
+                var futures = present.stream()
+                        .map(kind -> CompletableFuture.runAsync(
+                                () -> apply(kind, kinds.get(kind), items, results, executor, permits), executor))
+                        .toList();
+                futures.forEach(CompletableFuture::join);
+                failed = present.stream()
+                        .filter(kind -> kinds.get(kind).stream()
+                                .anyMatch(index -> results[index] == null || results[index].status() != 200))
+                        .findFirst()
+                        .orElse(null);
+            }
+        }
+        return Arrays.asList(results);
+    }
+
+    private void apply(String kind, List<Integer> indexes, List<BatchRequest.Item> items, BatchResult[] results,
+            Executor executor, Semaphore permits) {
+        var batch = new Batch(kind, indexes, items, results, executor, permits);
+        switch (kind) {
+            case "pv" -> batch.run(PersistentVolume.class, PersistentVolumeCreateRequest.class, pvService::prepare,
+                    pvService::merge, (request, data) -> pvService.push(data), pvService::saveAll,
+                    data -> new SyncKey(null, data.getName()), data -> restore(data.getId(), data::setId));
+            case "pvc" -> batch.run(PersistentVolumeClaim.class, PersistentVolumeClaimCreateRequest.class,
+                    pvcService::prepare, pvcService::merge, (request, data) -> pvcService.push(data),
+                    pvcService::saveAll,
+                    data -> new SyncKey(data.getNamespace(), data.getName()),
+                    data -> restore(data.getId(), data::setId));
+            case "configmap" -> batch.run(ConfigMap.class, ConfigMapRequest.Create.class, configMapService::prepare,
+                    configMapService::merge, (request, data) -> configMapService.push(data),
+                    configMapService::saveAll,
+                    data -> new SyncKey(data.getNamespace(), data.getName()),
+                    data -> restore(data.getId(), data::setId));
+            case "secret" -> batch.run(Secret.class, SecretRequest.Create.class, secretService::prepare,
+                    secretService::merge, (request, data) -> secretService.push(data, request.data()),
+                    secretService::saveAll,
+                    data -> new SyncKey(data.getNamespace(), data.getName()),
+                    data -> restore(data.getId(), data::setId));
+            case "statefulset" -> batch.run(StatefulSet.class, StatefulSetRequest.Create.class,
+                    statefulSetService::prepare, statefulSetService::merge,
+                    (request, data) -> statefulSetService.push(data), statefulSetService::saveAll,
+                    data -> new SyncKey(data.getNamespace(), data.getName()),
+                    data -> restore(data.getId(), data::setId));
+            default -> throw new IllegalStateException("unknown kind: " + kind);
+        }
+    }
+
+    // a rolled back save leaves the generated id on new rows, which would then be merged as existing ones
+    private static <I> Runnable restore(I id, Consumer<I> setId) {
+        return () -> setId.accept(id);
+    }
+
+    private final class Batch {
+        private final String kind;
+        private final List<Integer> indexes;
+        private final List<BatchRequest.Item> items;
+        private final BatchResult[] results;
+        private final Executor executor;
+        private final Semaphore permits;
+
+        Batch(String kind, List<Integer> indexes, List<BatchRequest.Item> items, BatchResult[] results,
+                Executor executor, Semaphore permits) {
+            this.kind = kind;
+            this.indexes = indexes;
+            this.items = items;
+            this.results = results;
+            this.executor = executor;
+            this.permits = permits;
+        }
+
+        // validates every item, merges them into the stored rows in bulk, applies them to the cluster
+        // concurrently and saves the applied rows of the kind with a single saveAll
+        <R, D> void run(Class<?> type, Class<R> requestType, Function<R, D> prepare, UnaryOperator<List<D>> merge,
+                BiConsumer<R, D> push, Function<List<D>, List<D>> saveAll, Function<D, SyncKey> key,
+                Function<D, Runnable> snapshot) {
+            var prepared = new ArrayList<Staged<R, D>>();
+            var seen = new HashSet<SyncKey>();
+            for (var index : indexes) {
+                try {
+                    var spec = items.get(index).spec();
+                    if (spec == null || !spec.isObject()) {
+                        throw new BadRequestException(kind + " spec must be an object", "spec");
+                    }
+                    var request = mapper.convertValue(spec, requestType);
+                    var data = prepare.apply(request);
+                    if (!seen.add(key.apply(data))) {
+                        throw new BadRequestException("duplicated in batch", "name");
+                    }
+                    prepared.add(new Staged<>(index, request, data));
+                } catch (BadRequestException e) {
+                    results[index] = BatchResult.failed(index, kind, 400, e.getMessage(), e.getField());
+                } catch (IllegalArgumentException e) {
+                    // the spec does not convert to the request, a field has the wrong type or an unknown value
+                    results[index] = BatchResult.failed(index, kind, 400, "invalid " + kind + " spec", "spec");
+                }
+            }
+            var merged = merge.apply(prepared.stream().map(Staged::data).toList());
+            var staged = new ArrayList<Staged<R, D>>();
+            for (int i = 0; i < prepared.size(); i++) {
+                staged.add(new Staged<>(prepared.get(i).index(), prepared.get(i).request(), merged.get(i)));
+            }
+            informers.write(type, seen, () -> {
+                // every call is started before the first join
+                var pushed = staged.stream()
+                        .map(item -> CompletableFuture.supplyAsync(() -> {
+                            permits.acquireUninterruptibly();
+                            try {
+                                push.accept(item.request(), item.data());
+                                return item;
+                            } finally {
+                                permits.release();
+                            }
+                        }, executor).exceptionally(e -> {
+                            fail(item.index(), e);
+                            return null;
+                        }))
+                        .toList()
+                        .stream()
+                        .map(CompletableFuture::join)
+                        .filter(Objects::nonNull)
+                        .toList();
+                if (pushed.isEmpty()) {
+                    return null;
+                }
+                var restore = pushed.stream().map(item -> snapshot.apply(item.data())).toList();
+                try {
+                    var saved = saveAll.apply(pushed.stream().map(Staged::data).toList());
+                    for (int i = 0; i < pushed.size(); i++) {
+                        var index = pushed.get(i).index();
+                        results[index] = BatchResult.ok(index, kind, saved.get(i));
+                    }
+                } catch (RuntimeException e) {
+                    // the objects are already in the cluster, each row is saved on its own so only the
+                    // rows that really fail are reported
+                    log.warn("failed to save {} batch, saving items one by one", kind, e);
+                    restore.forEach(Runnable::run);
+                    pushed.forEach(item -> save(item, saveAll, snapshot));
+                }
+                return null;
+            });
+        }
+
+        private <D> void save(Staged<?, D> item, Function<List<D>, List<D>> saveAll, Function<D, Runnable> snapshot) {
+            var restore = snapshot.apply(item.data());
+            try {
+                results[item.index()] = BatchResult.ok(item.index(), kind, saveAll.apply(List.of(item.data())).get(0));
+            } catch (RuntimeException e) {
+                restore.run();
+                log.error("failed to save {} {} after applying it", kind, item.index(), e);
+                results[item.index()] = BatchResult.failed(item.index(), kind, 500,
+                        "applied to the cluster but not saved: " + e.getMessage(), null);
+            }
+        }
+
+        private void fail(int index, Throwable e) {
+            var cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+            var status = cause instanceof KubernetesClientException k && k.getCode() > 0 ? k.getCode() : 500;
+            results[index] = BatchResult.failed(index, kind, status, cause.getMessage(), null);
+        }
+    }
+}
@@ -1,34 +1,64 @@
 package br.dev.optimus.gaia.service;
 
 import java.time.Instant;
-import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Objects;
+import java.util.stream.Collectors;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.core.env.Environment;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
 
 import br.dev.optimus.gaia.exception.BadRequestException;
 import br.dev.optimus.gaia.exception.NotFoundException;
+import br.dev.optimus.gaia.exception.PreconditionFailedException;
 import br.dev.optimus.gaia.model.DBConfigMap;
 import br.dev.optimus.gaia.repository.ConfigMapRepository;
 import br.dev.optimus.gaia.request.ConfigMapRequest;
+import br.dev.optimus.gaia.sync.SyncKey;
+import br.dev.optimus.gaia.sync.SyncPager;
+import br.dev.optimus.gaia.sync.SyncResult;
+import br.dev.optimus.gaia.sync.SyncTombstones;
+import br.dev.optimus.gaia.sync.SyncWriter;
+import io.fabric8.kubernetes.api.model.ConfigMap;
 import io.fabric8.kubernetes.client.KubernetesClient;
 
 @Service
 public class ConfigMapService {
     private final KubernetesClient client;
     private final ConfigMapRepository repository;
+    private final ResourceApplier applier;
+    private final InformerService informers;
+    private final SyncCheckpointService checkpoints;
+    private final EntityCache cache;
+    private final KubernetesThrottle throttle;
+    private final WriteCoalescer coalescer;
     private final Environment env;
     private final Logger log = LoggerFactory.getLogger(ConfigMapService.class);
     private final String namespace;
+    private final int batchSize;
+    private final long pageSize;
 
-    public ConfigMapService(KubernetesClient client, ConfigMapRepository repository, Environment env) {
+    public ConfigMapService(KubernetesClient client, ConfigMapRepository repository, ResourceApplier applier,
+            InformerService informers, SyncCheckpointService checkpoints, EntityCache cache,
+            WriteCoalescer coalescer, KubernetesThrottle throttle, Environment env) {
         this.client = client;
         this.repository = repository;
+        this.applier = applier;
+        this.informers = informers;
+        this.checkpoints = checkpoints;
+        this.cache = cache;
+        this.throttle = throttle;
+        this.coalescer = coalescer;
         this.env = env;
         this.namespace = env.getProperty("kubernetes.namespace", "default");
+        this.batchSize = env.getProperty("gaia.sync.batch-size", Integer.class, 500);
+        this.pageSize = env.getProperty("gaia.sync.page-size", Long.class, 500L);
     }
 
     private void validate(DBConfigMap data) {
@@ -49,26 +79,35 @@ public class ConfigMapService {
         return repository.findByDeletedAtIsNull();
     }
 
+    public List<DBConfigMap> list(Long after, Limit limit) {
+        return repository.findByDeletedAtIsNullAndIdGreaterThanOrderByIdAsc(after, limit);
+    }
+
     public DBConfigMap get(Long id) {
         return repository.findById(id).orElseThrow(() -> new NotFoundException("config map not found"));
     }
 
     public DBConfigMap get(String namespace, String name) {
-        return repository.findByNamespaceAndName(namespace, name)
+        return repository.findByNamespaceAndNameAndDeletedAtIsNull(namespace, name)
                 .orElseThrow(() -> new NotFoundException("config map not found"));
     }
 
     public DBConfigMap create(DBConfigMap data) {
         var now = Instant.now().getEpochSecond();
         validate(data);
-        if (repository.existsByNamespaceAndName(data.getNamespace(), data.getName())) {
+        if (repository.existsByNamespaceAndNameAndDeletedAtIsNull(data.getNamespace(), data.getName())) {
             throw new BadRequestException("config map already exists", "name");
         }
         data.setCreatedAt(now);
         data.setUpdatedAt(now);
-        client.configMaps().resource(data.configMap()).create();
-        log.info("creating config map: {}", data);
-        return repository.save(data);
+        return informers.write(ConfigMap.class, data.getNamespace(), data.getName(), () -> {
+            return applier.write(data.configMap(), true, created -> {
+                data.setResourceVersion(created.getMetadata().getResourceVersion());
+                data.setUid(created.getMetadata().getUid());
+                log.info("creating config map: {}", data);
+                return repository.save(data);
+            });
+        });
     }
 
     public DBConfigMap create(ConfigMapRequest.Create request) {
@@ -83,15 +122,45 @@ public class ConfigMapService {
     public DBConfigMap update(DBConfigMap data) {
         validate(data);
         data.setUpdatedAt(Instant.now().getEpochSecond());
-        client.configMaps().resource(data.configMap()).update();
-        log.info("updating config map: {}", data);
-        return repository.save(data);
+        var configMap = data.configMap();
+        configMap.getMetadata().setResourceVersion(data.getResourceVersion());
+        return informers.write(ConfigMap.class, data.getNamespace(), data.getName(), () -> {
+            return applier.write(configMap, false, updated -> {
+                data.setResourceVersion(updated.getMetadata().getResourceVersion());
+                data.setUid(updated.getMetadata().getUid());
+                log.info("updating config map: {}", data);
+                return repository.save(data);
+            });
+        });
     }
 
     public DBConfigMap update(Long id, ConfigMapRequest.Update request) {
+        return update(id, request, null);
+    }
+
+    // version is the one the client last read, null skips the check
+    public DBConfigMap update(Long id, ConfigMapRequest.Update request, Long version) {
         var data = get(id);
+        if (version != null && version != data.getVersion()) {
+            throw new PreconditionFailedException("config map has been modified");
+        }
+        // a conditional write has to fail when another one wins, so it is never merged; each
+        // unconditional request replaces the whole data, so merged writes keep the last one
+        if (version != null) {
+            return update(data, request);
+        }
+        return coalescer.submit(ConfigMap.class, data.getNamespace(), data.getName(),
+                () -> update(get(id), request));
+    }
+
+    private DBConfigMap update(DBConfigMap data, ConfigMapRequest.Update request) {
         data.setData(request.data());
-        return update(data);
+        return applier.checked(() -> repository.lockVersion(data.getId()).orElse(-1L) == data.getVersion(),
+                "config map has been modified", () -> update(data));
+    }
+
+    public long version(Long id) {
+        return repository.findVersionById(id).orElseThrow(() -> new NotFoundException("config map not found"));
     }
 
     public void delete(Long id) {
@@ -101,39 +170,180 @@ public class ConfigMapService {
         repository.save(data);
     }
 
-    public void sync() {
-        log.info("syncing config maps");
-        var list = new ArrayList<DBConfigMap>();
-        for (var cm : client.configMaps().inNamespace(namespace).list().getItems()) {
+    public DBConfigMap prepare(ConfigMapRequest.Create request) {
+        var data = DBConfigMap.builder()
+                .namespace(request.namespace())
+                .name(request.name())
+                .data(request.data())
+                .build();
+        validate(data);
+        return data;
+    }
+
+    // replaces the prepared rows of a batch by the stored ones carrying their content, the rows are looked up
+    // with one query per namespace instead of one per row
+    public List<DBConfigMap> merge(List<DBConfigMap> prepared) {
+        var existing = new HashMap<SyncKey, DBConfigMap>();
+        var names = prepared.stream().collect(Collectors.groupingBy(DBConfigMap::getNamespace,
+                Collectors.mapping(DBConfigMap::getName, Collectors.toSet())));
+        names.forEach((namespace, batch) -> {
+            for (var row : repository.findByNamespaceAndNameInAndDeletedAtIsNull(namespace, batch)) {
+                existing.put(new SyncKey(row.getNamespace(), row.getName()), row);
+            }
+        });
+        return prepared.stream().map(data -> {
+            var row = existing.get(new SyncKey(data.getNamespace(), data.getName()));
+            if (row == null) {
+                return data;
+            }
+            row.setData(data.getData());
+            return row;
+        }).toList();
+    }
+
+    public void push(DBConfigMap data) {
+        var now = Instant.now().getEpochSecond();
+        var applied = applier.push(data.configMap(), data.getId() == null);
+        data.setResourceVersion(applied.getMetadata().getResourceVersion());
+        data.setUid(applied.getMetadata().getUid());
+        if (data.getCreatedAt() == null) {
+            data.setCreatedAt(now);
+        }
+        data.setUpdatedAt(now);
+        data.setDeletedAt(null);
+    }
+
+    public List<DBConfigMap> saveAll(List<DBConfigMap> data) {
+        return applier.saveAll(data.stream().map(DBConfigMap::configMap).toList(), () -> repository.saveAll(data));
+    }
+
+    public SyncResult sync(String namespace) {
+        log.info("syncing config maps in {}", namespace);
+        // a resumed shard has replayed every change since its checkpoint, deletes included, only a shard
+        // without a checkpoint or whose checkpoint expired lists every object and sweeps the missing rows
+        if (checkpoints.resume(ConfigMap.class, namespace, client.configMaps().inNamespace(namespace),
+                this::apply, this::remove)) {
+            log.info("resumed config maps in {}", namespace);
+            return new SyncResult(0, 0, 0);
+        }
+        var dev = List.of(env.getActiveProfiles()).contains("dev");
+        var started = Instant.now().getEpochSecond();
+        var writer = new SyncWriter<>(repository, batchSize);
+        var listed = new HashSet<String>();
+        var resourceVersion = SyncPager.forEach(
+                options -> throttle.call(ConfigMap.class,
+                        () -> client.configMaps().inNamespace(namespace).list(options)),
+                pageSize, items -> {
+                    items.forEach(item -> listed.add(item.getMetadata().getName()));
+                    sync(namespace, items, writer, dev);
+                    writer.flush();
+                });
+        checkpoints.save(ConfigMap.class, namespace, resourceVersion);
+        var deleted = SyncTombstones.sweep(repository.findLive(namespace, started), listed, batchSize,
+                repository::markDeleted);
+        var result = writer.result(deleted);
+        log.info("synced config maps in {}: {} written, {} unchanged, {} deleted", namespace, result.written(),
+                result.skipped(), result.deleted());
+        return result;
+    }
+
+    private void sync(String namespace, List<ConfigMap> items, SyncWriter<DBConfigMap> writer, boolean dev) {
+        var names = items.stream().map(cm -> cm.getMetadata().getName()).toList();
+        var existing = new HashMap<SyncKey, DBConfigMap>();
+        for (var configMap : repository.findByNamespaceAndNameInAndDeletedAtIsNull(namespace, names)) {
+            existing.put(new SyncKey(configMap.getNamespace(), configMap.getName()), configMap);
+        }
+        for (var cm : items) {
             var name = cm.getMetadata().getName();
+            var resourceVersion = cm.getMetadata().getResourceVersion();
             var data = cm.getData();
             var now = Instant.now().getEpochSecond();
             if (name.equals("kube-root-ca.crt")) {
+                writer.skip();
                 continue;
             }
-            if (!repository.existsByNamespaceAndName(namespace, name)) {
-                var configMap = DBConfigMap.builder()
+            var configMap = existing.get(new SyncKey(namespace, name));
+            if (configMap == null) {
+                configMap = DBConfigMap.builder()
                         .namespace(namespace)
                         .name(name)
                         .data(data)
                         .build();
+                configMap.setResourceVersion(resourceVersion);
+                configMap.setUid(cm.getMetadata().getUid());
                 configMap.setCreatedAt(now);
                 configMap.setUpdatedAt(now);
                 log.info("creating config map: {}", configMap);
-                list.add(configMap);
+                writer.add(configMap);
                 continue;
             }
 
-            if (List.of(env.getActiveProfiles()).contains("dev")) {
-                var configMap = get(namespace, name);
-                configMap.setData(data);
-                configMap.setUpdatedAt(now);
-                log.info("updating config map: {}", configMap);
-                list.add(configMap);
+            if (!dev || resourceVersion.equals(configMap.getResourceVersion())
+                    || Objects.equals(configMap.getFingerprint(), DBConfigMap.fingerprint(data))) {
+                writer.skip();
+                continue;
             }
+
+            configMap.setData(data);
+            configMap.setResourceVersion(resourceVersion);
+            configMap.setUid(cm.getMetadata().getUid());
+            configMap.setUpdatedAt(now);
+            log.info("updating config map: {}", configMap);
+            writer.add(configMap);
         }
-        if (!list.isEmpty()) {
-            repository.saveAll(list);
+    }
+
+    // a null namespace watches all namespaces
+    public void watch(String namespace) {
+        informers.inform(ConfigMap.class, namespace, this::apply, this::remove);
+    }
+
+    public void apply(ConfigMap cm) {
+        var namespace = cm.getMetadata().getNamespace();
+        var name = cm.getMetadata().getName();
+        var resourceVersion = cm.getMetadata().getResourceVersion();
+        var data = cm.getData();
+        var now = Instant.now().getEpochSecond();
+        if (name.equals("kube-root-ca.crt") || !checkpoints.isNewer(ConfigMap.class, namespace, resourceVersion)) {
+            return;
+        }
+        var configMap = repository.findByNamespaceAndNameAndDeletedAtIsNull(namespace, name)
+                .flatMap(row -> cache.reload(DBConfigMap.class, row.getId(), repository::findByIdAndDeletedAtIsNull))
+                .orElse(null);
+        if (configMap == null) {
+            configMap = DBConfigMap.builder()
+                    .namespace(namespace)
+                    .name(name)
+                    .data(data)
+                    .build();
+            configMap.setCreatedAt(now);
+        } else if (Objects.equals(configMap.getResourceVersion(), resourceVersion)
+                || Objects.equals(configMap.getFingerprint(), DBConfigMap.fingerprint(data))) {
+            return;
+        }
+        configMap.setData(data);
+        configMap.setResourceVersion(resourceVersion);
+        configMap.setUid(cm.getMetadata().getUid());
+        configMap.setUpdatedAt(now);
+        log.info("applying config map: {}", configMap);
+        try {
+            repository.save(configMap);
+            checkpoints.save(ConfigMap.class, namespace, resourceVersion);
+        } catch (DataIntegrityViolationException e) {
+            log.warn("config map already saved: {}/{}", namespace, name);
         }
     }
+
+    public void remove(ConfigMap cm) {
+        var namespace = cm.getMetadata().getNamespace();
+        var name = cm.getMetadata().getName();
+        repository.findByNamespaceAndNameAndDeletedAtIsNull(namespace, name)
+                .flatMap(row -> cache.reload(DBConfigMap.class, row.getId(), repository::findByIdAndDeletedAtIsNull))
+                .ifPresent(configMap -> {
+                    configMap.setDeletedAt(Instant.now().getEpochSecond());
+                    log.info("removing config map: {}", configMap);
+                    repository.save(configMap);
+                });
+        checkpoints.save(ConfigMap.class, namespace, cm.getMetadata().getResourceVersion());
+    }
 }
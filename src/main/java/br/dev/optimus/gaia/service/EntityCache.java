@@ -0,0 +1,28 @@
+package br.dev.optimus.gaia.service;
+
+import java.util.Optional;
+import java.util.function.Function;
+
+import org.hibernate.SessionFactory;
+import org.springframework.stereotype.Service;
+
+import jakarta.persistence.EntityManagerFactory;
+
+// rows written by another gaia instance are only announced by the watch, so the cached copy of a row is
+// dropped and read again before the event is applied. Lookup queries only cache ids and are invalidated by
+// the table timestamps whenever the row is written
+@Service
+public class EntityCache {
+    private final SessionFactory sessionFactory;
+
+    public EntityCache(EntityManagerFactory entityManagerFactory) {
+        this.sessionFactory = entityManagerFactory.unwrap(SessionFactory.class);
+    }
+
+    public <T, I> Optional<T> reload(Class<T> type, I id, Function<I, Optional<T>> find) {
+        if (sessionFactory.getSessionFactoryOptions().isSecondLevelCacheEnabled()) {
+            sessionFactory.getCache().evictEntityData(type, id);
+        }
+        return find.apply(id);
+    }
+}
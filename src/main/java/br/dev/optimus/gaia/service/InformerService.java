@@ -0,0 +1,137 @@
+package br.dev.optimus.gaia.service;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Service;
+
+import br.dev.optimus.gaia.sync.SyncKey;
+import io.fabric8.kubernetes.api.model.HasMetadata;
+import io.fabric8.kubernetes.api.model.Namespaced;
+import io.fabric8.kubernetes.client.KubernetesClient;
+import io.fabric8.kubernetes.client.informers.ResourceEventHandler;
+import io.fabric8.kubernetes.client.informers.SharedIndexInformer;
+import jakarta.annotation.PreDestroy;
+
+@Service
+public class InformerService {
+    private final KubernetesClient client;
+    private final long resyncPeriod;
+    private final Logger log = LoggerFactory.getLogger(InformerService.class);
+    private final Map<String, SharedIndexInformer<?>> informers = new ConcurrentHashMap<>();
+    private final Set<String> pending = ConcurrentHashMap.newKeySet();
+
+    public InformerService(KubernetesClient client, Environment env) {
+        this.client = client;
+        this.resyncPeriod = env.getProperty("gaia.informer.resync-period", Long.class, 0L);
+    }
+
+    private String key(Class<?> type, String namespace, String name) {
+        return type.getSimpleName() + "/" + namespace + "/" + name;
+    }
+
+    // a null namespace watches every namespace, or the whole cluster for cluster scoped kinds
+    public <T extends HasMetadata> SharedIndexInformer<T> inform(Class<T> type, String namespace, Consumer<T> apply,
+            Consumer<T> remove) {
+        var resources = client.resources(type);
+        var informer = namespace == null
+                ? resources.inAnyNamespace().runnableInformer(resyncPeriod)
+                : resources.inNamespace(namespace).runnableInformer(resyncPeriod);
+        informer.addEventHandler(new ResourceEventHandler<T>() {
+            @Override
+            public void onAdd(T obj) {
+                handle(type, obj, apply);
+            }
+
+            @Override
+            public void onUpdate(T oldObj, T newObj) {
+                handle(type, newObj, apply);
+            }
+
+            @Override
+            public void onDelete(T obj, boolean deletedFinalStateUnknown) {
+                handle(type, obj, remove);
+            }
+        });
+        informers.put(type.getSimpleName() + "/" + (namespace == null ? "*" : namespace), informer);
+        log.info("watching {} in {}", type.getSimpleName(), namespace == null ? "all namespaces" : namespace);
+        informer.start().whenComplete((v, e) -> {
+            if (e != null) {
+                log.error("failed to start {} informer", type.getSimpleName(), e);
+            }
+        });
+        return informer;
+    }
+
+    // reads from the informer store once it has synced, falls back to the live read
+    // when no informer covers the namespace yet
+    @SuppressWarnings("unchecked")
+    public <T extends HasMetadata> T get(Class<T> type, String namespace, String name, Supplier<T> live) {
+        var informer = informers.get(type.getSimpleName() + "/" + namespace);
+        if (informer == null) {
+            informer = informers.get(type.getSimpleName() + "/*");
+        }
+        if (informer == null || !informer.hasSynced()) {
+            return live.get();
+        }
+        var key = Namespaced.class.isAssignableFrom(type) ? namespace + "/" + name : name;
+        return ((SharedIndexInformer<T>) informer).getStore().getByKey(key);
+    }
+
+    private <T extends HasMetadata> void handle(Class<T> type, T obj, Consumer<T> handler) {
+        var metadata = obj.getMetadata();
+        if (pending.contains(key(type, metadata.getNamespace(), metadata.getName()))) {
+            return;
+        }
+        try {
+            handler.accept(obj);
+        } catch (RuntimeException e) {
+            log.error("failed to handle {} event: {}/{}", type.getSimpleName(), metadata.getNamespace(),
+                    metadata.getName(), e);
+        }
+    }
+
+    // events for objects Gaia is writing are ignored until the row is saved
+    public <R> R write(Class<?> type, String namespace, String name, Supplier<R> write) {
+        var key = key(type, namespace, name);
+        pending.add(key);
+        try {
+            return write.get();
+        } finally {
+            pending.remove(key);
+        }
+    }
+
+    public <R> R write(Class<?> type, Collection<SyncKey> objects, Supplier<R> write) {
+        var keys = objects.stream().map(object -> key(type, object.namespace(), object.name())).toList();
+        pending.addAll(keys);
+        try {
+            return write.get();
+        } finally {
+            pending.removeAll(keys);
+        }
+    }
+
+    // stops the informers of a namespace that is no longer synced, its rows are kept
+    public void forget(String namespace) {
+        informers.entrySet().removeIf(entry -> {
+            if (!entry.getKey().endsWith("/" + namespace)) {
+                return false;
+            }
+            entry.getValue().stop();
+            return true;
+        });
+    }
+
+    @PreDestroy
+    public void stop() {
+        informers.values().forEach(SharedIndexInformer::stop);
+    }
+}
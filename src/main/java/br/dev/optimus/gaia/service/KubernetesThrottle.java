@@ -0,0 +1,146 @@
+package br.dev.optimus.gaia.service;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+@Service
+public class KubernetesThrottle {
+    private final Environment env;
+    private final TokenBucket global;
+    private final Map<String, TokenBucket> kinds = new ConcurrentHashMap<>();
+    private final Semaphore sync;
+    private final Semaphore interactive;
+    private final ThreadLocal<Lane> current = ThreadLocal.withInitial(() -> Lane.INTERACTIVE);
+    private final MeterRegistry registry;
+    private final AtomicInteger syncInFlight = new AtomicInteger();
+    private final AtomicInteger interactiveInFlight = new AtomicInteger();
+
+    public enum Lane {
+        SYNC, INTERACTIVE
+    }
+
+    public KubernetesThrottle(MeterRegistry registry, Environment env) {
+        this.env = env;
+        this.registry = registry;
+        Gauge.builder("gaia.kubernetes.requests.inflight", syncInFlight, AtomicInteger::get)
+                .description("api server calls running or waiting for a token")
+                .tag("lane", "sync")
+                .register(registry);
+        Gauge.builder("gaia.kubernetes.requests.inflight", interactiveInFlight, AtomicInteger::get)
+                .description("api server calls running or waiting for a token")
+                .tag("lane", "interactive")
+                .register(registry);
+        this.global = bucket("gaia.kubernetes.qps", "gaia.kubernetes.burst", 50.0, 100);
+        this.sync = new Semaphore(Math.max(env.getProperty("gaia.kubernetes.bulkhead.sync", Integer.class, 4), 1));
+        this.interactive = new Semaphore(
+                Math.max(env.getProperty("gaia.kubernetes.bulkhead.interactive", Integer.class, 32), 1), true);
+    }
+
+    // calls made by work inside this block go through the sync bulkhead, so a large resync
+    // can never take the permits interactive requests are waiting on
+    public <T> T sync(Supplier<T> work) {
+        return in(Lane.SYNC, work);
+    }
+
+    // the lane is kept per thread, work handed to an executor has to be given the lane it was submitted in
+    public Lane lane() {
+        return current.get();
+    }
+
+    public <T> T in(Lane lane, Supplier<T> work) {
+        var previous = current.get();
+        current.set(lane);
+        try {
+            return work.get();
+        } finally {
+            current.set(previous);
+        }
+    }
+
+    public <T> T call(Class<?> type, Supplier<T> call) {
+        var background = current.get() == Lane.SYNC;
+        var lane = background ? "sync" : "interactive";
+        var bulkhead = background ? sync : interactive;
+        var inFlight = background ? syncInFlight : interactiveInFlight;
+        bulkhead.acquireUninterruptibly();
+        inFlight.incrementAndGet();
+        try {
+            // a bulkhead bounds how many reservations a lane can hold ahead of the other one
+            var wait = Math.max(reserve(global), reserve(kind(type)));
+            var deadline = System.nanoTime() + wait;
+            while (wait > 0) {
+                LockSupport.parkNanos(wait);
+                wait = deadline - System.nanoTime();
+            }
+            return Timer.builder("gaia.kubernetes.requests")
+                    .description("api server calls made by the services")
+                    .tag("kind", type.getSimpleName())
+                    .tag("lane", lane)
+                    .register(registry)
+                    .record(call);
+        } finally {
+            inFlight.decrementAndGet();
+            bulkhead.release();
+        }
+    }
+
+    public void run(Class<?> type, Runnable call) {
+        call(type, () -> {
+            call.run();
+            return null;
+        });
+    }
+
+    private TokenBucket kind(Class<?> type) {
+        var kind = type.getSimpleName().toLowerCase(Locale.ROOT);
+        return kinds.computeIfAbsent(kind, k -> bucket("gaia.kubernetes.kinds." + k + ".qps",
+                "gaia.kubernetes.kinds." + k + ".burst", 0.0, 0));
+    }
+
+    private TokenBucket bucket(String qpsKey, String burstKey, double qps, int burst) {
+        var rate = env.getProperty(qpsKey, Double.class, qps);
+        if (rate <= 0) {
+            return null;
+        }
+        return new TokenBucket(rate, Math.max(env.getProperty(burstKey, Integer.class, burst), 1));
+    }
+
+    private static long reserve(TokenBucket bucket) {
+        return bucket == null ? 0 : bucket.reserve();
+    }
+
+    private static final class TokenBucket {
+        private final double rate;
+        private final double capacity;
+        private double tokens;
+        private long refilledAt = System.nanoTime();
+
+        TokenBucket(double rate, int burst) {
+            this.rate = rate;
+            this.capacity = burst;
+            this.tokens = burst;
+        }
+
+        // takes a token even when none is left and returns the nanoseconds until it is
+        // refilled, so callers are served in the order they arrived
+        synchronized long reserve() {
+            var now = System.nanoTime();
+            tokens = Math.min(capacity, tokens + (now - refilledAt) * rate / 1e9);
+            refilledAt = now;
+            tokens -= 1;
+            return tokens >= 0 ? 0 : (long) (-tokens * 1e9 / rate);
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package br.dev.optimus.gaia.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+// builds the RFC 7386 JSON merge patch that turns source into target, objects are
+// merged field by field, arrays and scalars are replaced and removed fields become null
+final class MergePatch {
+    private MergePatch() {
+    }
+
+    static ObjectNode diff(JsonNode source, JsonNode target) {
+        var patch = JsonNodeFactory.instance.objectNode();
+        source.fieldNames().forEachRemaining(name -> {
+            if (!target.has(name)) {
+                patch.putNull(name);
+            }
+        });
+        target.fields().forEachRemaining(field -> {
+            var before = source.get(field.getKey());
+            var after = field.getValue();
+            if (before != null && before.isObject() && after.isObject()) {
+                var nested = diff(before, after);
+                if (!nested.isEmpty()) {
+                    patch.set(field.getKey(), nested);
+                }
+            } else if (!after.equals(before)) {
+                patch.set(field.getKey(), after);
+            }
+        });
+        return patch;
+    }
+}
@@ -0,0 +1,62 @@
+package br.dev.optimus.gaia.service;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Service;
+
+import io.fabric8.kubernetes.api.model.Namespace;
+import io.fabric8.kubernetes.client.KubernetesClient;
+
+@Service
+public class NamespaceService {
+    private final KubernetesClient client;
+    private final KubernetesThrottle throttle;
+    private final List<String> namespaces;
+    private final String selector;
+    private final boolean all;
+    private final Logger log = LoggerFactory.getLogger(NamespaceService.class);
+
+    public NamespaceService(KubernetesClient client, KubernetesThrottle throttle, Environment env) {
+        this.client = client;
+        this.throttle = throttle;
+        this.namespaces = Arrays.stream(env.getProperty("gaia.sync.namespaces", String[].class,
+                new String[] { env.getProperty("kubernetes.namespace", "default") }))
+                .map(String::trim)
+                .filter(namespace -> !namespace.isEmpty())
+                .distinct()
+                .toList();
+        this.selector = env.getProperty("gaia.sync.namespace-selector");
+        this.all = env.getProperty("gaia.sync.all-namespaces", Boolean.class, false);
+    }
+
+    // all namespaces are watched by a single informer instead of one per namespace
+    public boolean isAll() {
+        return all;
+    }
+
+    // the namespaces matching a label selector change while Gaia runs, they are resolved again periodically
+    public boolean isSelected() {
+        return !all && selector != null && !selector.isBlank();
+    }
+
+    public List<String> resolve() {
+        if (all) {
+            log.info("resolving all namespaces");
+            return names(throttle.call(Namespace.class, () -> client.namespaces().list()).getItems());
+        }
+        if (selector != null && !selector.isBlank()) {
+            log.info("resolving namespaces matching: {}", selector);
+            return names(throttle.call(Namespace.class,
+                    () -> client.namespaces().withLabelSelector(selector).list()).getItems());
+        }
+        return namespaces;
+    }
+
+    private List<String> names(List<Namespace> items) {
+        return items.stream().map(namespace -> namespace.getMetadata().getName()).sorted().toList();
+    }
+}
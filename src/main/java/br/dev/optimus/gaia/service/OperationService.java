@@ -0,0 +1,211 @@
+package br.dev.optimus.gaia.service;
+
+import java.time.Instant;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.env.Environment;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import br.dev.optimus.gaia.OperationStatus;
+import br.dev.optimus.gaia.exception.BadRequestException;
+import br.dev.optimus.gaia.exception.NotFoundException;
+import br.dev.optimus.gaia.exception.PreconditionFailedException;
+import br.dev.optimus.gaia.model.DBOperation;
+import br.dev.optimus.gaia.repository.OperationRepository;
+import br.dev.optimus.gaia.request.ConfigMapRequest;
+import br.dev.optimus.gaia.request.PersistentVolumeClaimCreateRequest;
+import br.dev.optimus.gaia.request.PersistentVolumeClaimUpdateRequest;
+import br.dev.optimus.gaia.request.PersistentVolumeCreateRequest;
+import br.dev.optimus.gaia.request.PersistentVolumeUpdateRequest;
+import br.dev.optimus.gaia.request.StatefulSetRequest;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+@Service
+public class OperationService {
+    private final OperationRepository repository;
+    private final PersistentVolumeService pvService;
+    private final PersistentVolumeClaimService pvcService;
+    private final ConfigMapService configMapService;
+    private final SecretService secretService;
+    private final StatefulSetService statefulSetService;
+    private final KubernetesThrottle throttle;
+    private final ObjectMapper mapper;
+    private final Semaphore permits;
+    private final String owner = UUID.randomUUID().toString();
+    private final long lease;
+    private final Set<Long> running = ConcurrentHashMap.newKeySet();
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final Logger log = LoggerFactory.getLogger(OperationService.class);
+
+    public OperationService(OperationRepository repository, PersistentVolumeService pvService,
+            PersistentVolumeClaimService pvcService, ConfigMapService configMapService, SecretService secretService,
+            StatefulSetService statefulSetService, KubernetesThrottle throttle, ObjectMapper mapper,
+            Environment env) {
+        this.repository = repository;
+        this.pvService = pvService;
+        this.pvcService = pvcService;
+        this.configMapService = configMapService;
+        this.secretService = secretService;
+        this.statefulSetService = statefulSetService;
+        this.throttle = throttle;
+        this.mapper = mapper;
+        this.permits = new Semaphore(Math.max(env.getProperty("gaia.operations.workers", Integer.class, 4), 1));
+        this.lease = Math.max(env.getProperty("gaia.operations.lease", Long.class, 30L), 1);
+    }
+
+    // a running operation belongs to the instance that claimed it for as long as its lease is renewed,
+    // only operations whose owner stopped renewing are queued again
+    @PostConstruct
+    public void recover() {
+        var count = repository.reclaim(OperationStatus.RUNNING, OperationStatus.PENDING,
+                Instant.now().getEpochSecond());
+        if (count > 0) {
+            log.info("requeued {} interrupted operations", count);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${gaia.operations.heartbeat:10000}")
+    public void heartbeat() {
+        if (!running.isEmpty()) {
+            repository.renew(Set.copyOf(running), OperationStatus.RUNNING, owner,
+                    Instant.now().getEpochSecond() + lease);
+        }
+        recover();
+    }
+
+    public DBOperation submit(String kind, String action, Long targetId, Object payload) {
+        return submit(kind, action, targetId, payload, null);
+    }
+
+    // an If-Match version is kept with the operation and checked again when it runs, the row may
+    // change while the operation waits in the queue
+    public DBOperation submit(String kind, String action, Long targetId, Object payload, Long version) {
+        var operation = new DBOperation(kind, action, targetId, payload == null ? null : mapper.valueToTree(payload));
+        operation.setExpectedVersion(version);
+        operation.setCreatedAt(Instant.now().getEpochSecond());
+        log.info("queueing operation: {}", operation);
+        return repository.save(operation);
+    }
+
+    public DBOperation get(Long id) {
+        return repository.findById(id).orElseThrow(() -> new NotFoundException("operation not found"));
+    }
+
+    @Scheduled(fixedDelayString = "${gaia.operations.poll-interval:500}")
+    public void poll() {
+        var free = permits.availablePermits();
+        if (free == 0) {
+            return;
+        }
+        for (var operation : repository.findByStatusOrderByIdAsc(OperationStatus.PENDING, Limit.of(free))) {
+            var now = Instant.now().getEpochSecond();
+            if (repository.claim(operation.getId(), OperationStatus.PENDING, OperationStatus.RUNNING, now, owner,
+                    now + lease) == 0) {
+                continue;
+            }
+            operation.setStatus(OperationStatus.RUNNING);
+            operation.setStartedAt(now);
+            operation.setAttempts(operation.getAttempts() + 1);
+            operation.setOwner(owner);
+            operation.setLeaseUntil(now + lease);
+            running.add(operation.getId());
+            permits.acquireUninterruptibly();
+            // operations are queued by api requests, they keep the interactive lane on the worker thread
+            executor.execute(() -> {
+                try {
+                    throttle.in(KubernetesThrottle.Lane.INTERACTIVE, () -> {
+                        run(operation);
+                        return null;
+                    });
+                } finally {
+                    running.remove(operation.getId());
+                    permits.release();
+                }
+            });
+        }
+    }
+
+    private void run(DBOperation operation) {
+        log.info("running operation: {}", operation);
+        try {
+            var result = execute(operation);
+            operation.setResult(result == null ? null : mapper.valueToTree(result));
+            operation.setStatus(OperationStatus.SUCCEEDED);
+        } catch (BadRequestException e) {
+            operation.setStatus(OperationStatus.FAILED);
+            operation.setError(e.getMessage());
+            operation.setField(e.getField());
+        } catch (PreconditionFailedException e) {
+            operation.setStatus(OperationStatus.FAILED);
+            operation.setError(e.getMessage());
+        } catch (RuntimeException e) {
+            log.error("operation {} failed", operation.getId(), e);
+            operation.setStatus(OperationStatus.FAILED);
+            operation.setError(e.getMessage());
+        }
+        operation.setFinishedAt(Instant.now().getEpochSecond());
+        operation.setLeaseUntil(null);
+        repository.save(operation);
+    }
+
+    private Object execute(DBOperation operation) {
+        var payload = operation.getPayload();
+        var id = operation.getTargetId();
+        var version = operation.getExpectedVersion();
+        return switch (operation.getKind() + ":" + operation.getAction()) {
+            case "pv:create" -> pvService.create(mapper.convertValue(payload, PersistentVolumeCreateRequest.class));
+            case "pv:update" ->
+                pvService.update(id, mapper.convertValue(payload, PersistentVolumeUpdateRequest.class), version);
+            case "pvc:create" ->
+                pvcService.create(mapper.convertValue(payload, PersistentVolumeClaimCreateRequest.class));
+            case "pvc:update" ->
+                pvcService.update(id, mapper.convertValue(payload, PersistentVolumeClaimUpdateRequest.class), version);
+            case "configmap:create" ->
+                configMapService.create(mapper.convertValue(payload, ConfigMapRequest.Create.class));
+            case "configmap:update" ->
+                configMapService.update(id, mapper.convertValue(payload, ConfigMapRequest.Update.class), version);
+            case "statefulset:create" ->
+                statefulSetService.create(mapper.convertValue(payload, StatefulSetRequest.Create.class));
+            case "statefulset:update" ->
+                statefulSetService.update(id, mapper.convertValue(payload, StatefulSetRequest.Update.class), version);
+            case "pv:delete" -> {
+                pvService.delete(id);
+                yield null;
+            }
+            case "pvc:delete" -> {
+                pvcService.delete(id);
+                yield null;
+            }
+            case "configmap:delete" -> {
+                configMapService.delete(id);
+                yield null;
+            }
+            case "secret:delete" -> {
+                secretService.delete(id);
+                yield null;
+            }
+            case "statefulset:delete" -> {
+                statefulSetService.delete(id);
+                yield null;
+            }
+            default -> throw new BadRequestException("unknown operation", "action");
+        };
+    }
+
+    @PreDestroy
+    public void stop() {
+        executor.shutdown();
+    }
+}
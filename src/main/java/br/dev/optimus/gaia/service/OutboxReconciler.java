@@ -0,0 +1,69 @@
+package br.dev.optimus.gaia.service;
+
+import java.time.Instant;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.env.Environment;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import br.dev.optimus.gaia.model.DBOutbox;
+import br.dev.optimus.gaia.repository.OutboxRepository;
+import io.fabric8.kubernetes.api.model.HasMetadata;
+import io.fabric8.kubernetes.client.KubernetesClient;
+
+@Service
+public class OutboxReconciler {
+    private final KubernetesClient client;
+    private final OutboxRepository repository;
+    private final ResourceApplier applier;
+    private final KubernetesThrottle throttle;
+    private final int batchSize;
+    private final long maxBackoff;
+    private final Logger log = LoggerFactory.getLogger(OutboxReconciler.class);
+
+    public OutboxReconciler(KubernetesClient client, OutboxRepository repository, ResourceApplier applier,
+            KubernetesThrottle throttle, Environment env) {
+        this.client = client;
+        this.repository = repository;
+        this.applier = applier;
+        this.throttle = throttle;
+        this.batchSize = env.getProperty("gaia.outbox.batch-size", Integer.class, 100);
+        this.maxBackoff = env.getProperty("gaia.outbox.max-backoff", Long.class, 300L);
+    }
+
+    @Scheduled(fixedDelayString = "${gaia.outbox.poll-interval:1000}")
+    public void drain() {
+        var entries = repository.findByNextAttemptAtLessThanEqualOrderByIdAsc(Instant.now().getEpochSecond(),
+                Limit.of(batchSize));
+        // replayed writes are background traffic and share the sync bulkhead
+        throttle.sync(() -> {
+            for (var entry : entries) {
+                try {
+                    reconcile(entry);
+                    repository.deleteById(entry.getId());
+                } catch (RuntimeException e) {
+                    // backs off exponentially, entries are never dropped
+                    var delay = Math.min(1L << Math.min(entry.getAttempts(), 20), maxBackoff);
+                    log.warn("outbox entry {} failed, retrying in {}s: {}", entry, delay, e.getMessage());
+                    repository.retry(entry.getId(), e.getMessage(), Instant.now().getEpochSecond() + delay);
+                }
+            }
+            return null;
+        });
+    }
+
+    // server-side apply and delete are both idempotent, so an entry applied twice after
+    // a crash converges to the same object
+    private void reconcile(DBOutbox entry) {
+        HasMetadata item = client.getKubernetesSerialization().unmarshal(entry.getPayload());
+        log.info("reconciling outbox entry: {}", entry);
+        switch (entry.getAction()) {
+            case ResourceApplier.APPLY -> applier.apply(item);
+            case ResourceApplier.DELETE -> applier.delete(item);
+            default -> throw new IllegalArgumentException("unknown outbox action: " + entry.getAction());
+        }
+    }
+}
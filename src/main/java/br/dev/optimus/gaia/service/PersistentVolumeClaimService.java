@@ -1,23 +1,35 @@
 package br.dev.optimus.gaia.service;
 
 import java.time.Instant;
-import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.core.env.Environment;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
 
 import br.dev.optimus.gaia.AccessMode;
 import br.dev.optimus.gaia.exception.BadRequestException;
 import br.dev.optimus.gaia.exception.NotFoundException;
+import br.dev.optimus.gaia.exception.PreconditionFailedException;
 import br.dev.optimus.gaia.model.DBPersistentVolumeClaim;
 import br.dev.optimus.gaia.repository.PersistentVolumeClaimRepository;
 import br.dev.optimus.gaia.request.PersistentVolumeClaimCreateRequest;
 import br.dev.optimus.gaia.request.PersistentVolumeClaimUpdateRequest;
 import br.dev.optimus.gaia.response.PersistentVolumeClaimResponse;
+import br.dev.optimus.gaia.sync.SyncKey;
+import br.dev.optimus.gaia.sync.SyncPager;
+import br.dev.optimus.gaia.sync.SyncResult;
+import br.dev.optimus.gaia.sync.SyncTombstones;
+import br.dev.optimus.gaia.sync.SyncWriter;
 import io.fabric8.kubernetes.api.model.PersistentVolumeClaim;
 import io.fabric8.kubernetes.api.model.PersistentVolumeClaimBuilder;
 import io.fabric8.kubernetes.api.model.PersistentVolumeClaimSpecBuilder;
@@ -28,17 +40,32 @@ import io.fabric8.kubernetes.client.KubernetesClient;
 public class PersistentVolumeClaimService {
     private final KubernetesClient client;
     private final PersistentVolumeClaimRepository repository;
+    private final ResourceApplier applier;
+    private final InformerService informers;
+    private final SyncCheckpointService checkpoints;
+    private final EntityCache cache;
+    private final KubernetesThrottle throttle;
     private final Environment env;
     private final Logger log = LoggerFactory.getLogger(PersistentVolumeClaimService.class);
     private final String namespace;
+    private final int batchSize;
+    private final long pageSize;
 
     public PersistentVolumeClaimService(KubernetesClient client, PersistentVolumeClaimRepository repository,
-            Environment env) {
+            ResourceApplier applier, InformerService informers, SyncCheckpointService checkpoints,
+            EntityCache cache, KubernetesThrottle throttle, Environment env) {
         this.client = client;
         this.repository = repository;
+        this.applier = applier;
+        this.informers = informers;
+        this.checkpoints = checkpoints;
+        this.cache = cache;
+        this.throttle = throttle;
         this.env = env;
         log.info("default namespace: {}", env.getProperty("kubernetes.namespace"));
         this.namespace = env.getProperty("kubernetes.namespace", "default");
+        this.batchSize = env.getProperty("gaia.sync.batch-size", Integer.class, 500);
+        this.pageSize = env.getProperty("gaia.sync.page-size", Long.class, 500L);
     }
 
     private void validate(DBPersistentVolumeClaim data) {
@@ -90,15 +117,21 @@ public class PersistentVolumeClaimService {
         return repository.findByDeletedAtIsNull();
     }
 
+    public List<DBPersistentVolumeClaim> getAll(Long after, Limit limit) {
+        return repository.findByDeletedAtIsNullAndIdGreaterThanOrderByIdAsc(after, limit);
+    }
+
     public DBPersistentVolumeClaim get(long id) {
         log.info("get persistent volume claim: {}", id);
         return repository.findById(id).orElseThrow(() -> new NotFoundException("persistent volume claim not found"));
     }
 
-    public PersistentVolumeClaimResponse get(String namespace, String name) {
-        log.info("get persistent volume claim: {}", namespace + "/" + name);
-        var pvc = client.persistentVolumeClaims().resource(pvc(namespace, name)).get();
-        var data = repository.findByNamespaceAndName(namespace, name)
+    public PersistentVolumeClaimResponse get(String namespace, String name, boolean live) {
+        log.debug("get persistent volume claim: {}", namespace + "/" + name);
+        Supplier<PersistentVolumeClaim> read = () -> throttle.call(PersistentVolumeClaim.class,
+                () -> client.persistentVolumeClaims().resource(pvc(namespace, name)).get());
+        var pvc = live ? read.get() : informers.get(PersistentVolumeClaim.class, namespace, name, read);
+        var data = repository.findByNamespaceAndNameAndDeletedAtIsNull(namespace, name)
                 .orElseThrow(() -> new NotFoundException("persistent volume claim not found"));
         return new PersistentVolumeClaimResponse(pvc, data);
     }
@@ -106,14 +139,19 @@ public class PersistentVolumeClaimService {
     public DBPersistentVolumeClaim create(DBPersistentVolumeClaim data) {
         var now = Instant.now().getEpochSecond();
         log.info("creating persistent volume claim: {}", data);
-        if (repository.existsByNamespaceAndName(data.getNamespace(), data.getName())) {
+        if (repository.existsByNamespaceAndNameAndDeletedAtIsNull(data.getNamespace(), data.getName())) {
             throw new BadRequestException("persistent volume claim name already exists", "name");
         }
         validate(data);
-        client.persistentVolumeClaims().resource(pvc(data)).create();
-        data.setCreatedAt(now);
-        data.setUpdatedAt(now);
-        return repository.save(data);
+        return informers.write(PersistentVolumeClaim.class, data.getNamespace(), data.getName(), () -> {
+            return applier.write(pvc(data), true, created -> {
+                data.setResourceVersion(created.getMetadata().getResourceVersion());
+                data.setUid(created.getMetadata().getUid());
+                data.setCreatedAt(now);
+                data.setUpdatedAt(now);
+                return repository.save(data);
+            });
+        });
     }
 
     public DBPersistentVolumeClaim create(PersistentVolumeClaimCreateRequest request) {
@@ -130,61 +168,239 @@ public class PersistentVolumeClaimService {
     public DBPersistentVolumeClaim update(DBPersistentVolumeClaim data) {
         log.info("updating persistent volume claim: {}", data);
         validate(data);
-        client.persistentVolumeClaims().resource(pvc(data)).update();
-        data.setUpdatedAt(Instant.now().getEpochSecond());
-        return repository.save(data);
+        var pvc = pvc(data);
+        pvc.getMetadata().setResourceVersion(data.getResourceVersion());
+        return informers.write(PersistentVolumeClaim.class, data.getNamespace(), data.getName(), () -> {
+            return applier.write(pvc, false, updated -> {
+                data.setResourceVersion(updated.getMetadata().getResourceVersion());
+                data.setUid(updated.getMetadata().getUid());
+                data.setUpdatedAt(Instant.now().getEpochSecond());
+                return repository.save(data);
+            });
+        });
     }
 
     public DBPersistentVolumeClaim update(long id, PersistentVolumeClaimUpdateRequest request) {
+        return update(id, request, null);
+    }
+
+    public DBPersistentVolumeClaim update(long id, PersistentVolumeClaimUpdateRequest request, Long version) {
         var data = get(id);
+        if (version != null && version != data.getVersion()) {
+            throw new PreconditionFailedException("persistent volume claim has been modified");
+        }
         data.setCapacity(request.capacity());
         data.setAccessMode(request.accessMode());
         data.setVolumeName(request.volumeName());
-        return update(data);
+        return applier.checked(() -> repository.lockVersion(data.getId()).orElse(-1L) == data.getVersion(),
+                "persistent volume claim has been modified", () -> update(data));
+    }
+
+    public long version(long id) {
+        return repository.findVersionById(id)
+                .orElseThrow(() -> new NotFoundException("persistent volume claim not found"));
     }
 
     public void delete(Long id) {
         log.info("deleting persistent volume claim: {}", id);
         var data = get(id);
-        client.persistentVolumeClaims().resource(pvc(data)).delete();
-        data.setDeletedAt(Instant.now().getEpochSecond());
-        repository.save(data);
+        informers.write(PersistentVolumeClaim.class, data.getNamespace(), data.getName(), () -> {
+            return applier.delete(pvc(data), () -> {
+                data.setDeletedAt(Instant.now().getEpochSecond());
+                return repository.save(data);
+            });
+        });
+    }
+
+    public DBPersistentVolumeClaim prepare(PersistentVolumeClaimCreateRequest request) {
+        var data = DBPersistentVolumeClaim.builder()
+                .name(request.name())
+                .namespace(request.namespace())
+                .capacity(request.capacity())
+                .accessMode(request.accessMode())
+                .volumeName(request.volumeName())
+                .build();
+        validate(data);
+        return data;
+    }
+
+    // replaces the prepared rows of a batch by the stored ones carrying their content, the rows are looked up
+    // with one query per namespace instead of one per row
+    public List<DBPersistentVolumeClaim> merge(List<DBPersistentVolumeClaim> prepared) {
+        var existing = new HashMap<SyncKey, DBPersistentVolumeClaim>();
+        var names = prepared.stream().collect(Collectors.groupingBy(DBPersistentVolumeClaim::getNamespace,
+                Collectors.mapping(DBPersistentVolumeClaim::getName, Collectors.toSet())));
+        names.forEach((namespace, batch) -> {
+            for (var row : repository.findByNamespaceAndNameInAndDeletedAtIsNull(namespace, batch)) {
+                existing.put(new SyncKey(row.getNamespace(), row.getName()), row);
+            }
+        });
+        return prepared.stream().map(data -> {
+            var row = existing.get(new SyncKey(data.getNamespace(), data.getName()));
+            if (row == null) {
+                return data;
+            }
+            row.setCapacity(data.getCapacity());
+            row.setAccessMode(data.getAccessMode());
+            row.setVolumeName(data.getVolumeName());
+            return row;
+        }).toList();
     }
 
-    public List<DBPersistentVolumeClaim> sync() {
-        log.info("syncing persistent volume claims");
-        var list = new ArrayList<DBPersistentVolumeClaim>();
-        for (var pvc : client.persistentVolumeClaims().inNamespace(namespace).list().getItems()) {
+    public void push(DBPersistentVolumeClaim data) {
+        var now = Instant.now().getEpochSecond();
+        var applied = applier.push(pvc(data), data.getId() == 0);
+        data.setResourceVersion(applied.getMetadata().getResourceVersion());
+        data.setUid(applied.getMetadata().getUid());
+        if (data.getCreatedAt() == 0) {
+            data.setCreatedAt(now);
+        }
+        data.setUpdatedAt(now);
+        data.setDeletedAt(null);
+    }
+
+    public List<DBPersistentVolumeClaim> saveAll(List<DBPersistentVolumeClaim> data) {
+        return applier.saveAll(data.stream().map(this::pvc).toList(), () -> repository.saveAll(data));
+    }
+
+    public SyncResult sync(String namespace) {
+        log.info("syncing persistent volume claims in {}", namespace);
+        // a resumed shard has replayed every change since its checkpoint, deletes included, only a shard
+        // without a checkpoint or whose checkpoint expired lists every object and sweeps the missing rows
+        if (checkpoints.resume(PersistentVolumeClaim.class, namespace,
+                client.persistentVolumeClaims().inNamespace(namespace), this::apply, this::remove)) {
+            log.info("resumed persistent volume claims in {}", namespace);
+            return new SyncResult(0, 0, 0);
+        }
+        var dev = List.of(env.getActiveProfiles()).contains("dev");
+        var started = Instant.now().getEpochSecond();
+        var writer = new SyncWriter<>(repository, batchSize);
+        var listed = new HashSet<String>();
+        var resourceVersion = SyncPager.forEach(
+                options -> throttle.call(PersistentVolumeClaim.class,
+                        () -> client.persistentVolumeClaims().inNamespace(namespace).list(options)),
+                pageSize,
+                items -> {
+                    items.forEach(item -> listed.add(item.getMetadata().getName()));
+                    sync(namespace, items, writer, dev);
+                    writer.flush();
+                });
+        checkpoints.save(PersistentVolumeClaim.class, namespace, resourceVersion);
+        var deleted = SyncTombstones.sweep(repository.findLive(namespace, started), listed, batchSize,
+                repository::markDeleted);
+        var result = writer.result(deleted);
+        log.info("synced persistent volume claims in {}: {} written, {} unchanged, {} deleted", namespace,
+                result.written(), result.skipped(), result.deleted());
+        return result;
+    }
+
+    private void sync(String namespace, List<PersistentVolumeClaim> items, SyncWriter<DBPersistentVolumeClaim> writer,
+            boolean dev) {
+        var names = items.stream().map(pvc -> pvc.getMetadata().getName()).toList();
+        var existing = new HashMap<SyncKey, DBPersistentVolumeClaim>();
+        for (var data : repository.findByNamespaceAndNameInAndDeletedAtIsNull(namespace, names)) {
+            existing.put(new SyncKey(data.getNamespace(), data.getName()), data);
+        }
+        for (var pvc : items) {
             var now = Instant.now().getEpochSecond();
-            var namespace = pvc.getMetadata().getNamespace();
             var name = pvc.getMetadata().getName();
             var capacity = pvc.getSpec().getResources().getRequests().get("storage").toString();
             var accessMode = AccessMode.valueOf(pvc.getSpec().getAccessModes().get(0));
             var volumeName = pvc.getSpec().getVolumeName();
-            if (!repository.existsByNamespaceAndName(pvc.getMetadata().getNamespace(), pvc.getMetadata().getName())) {
-                var data = DBPersistentVolumeClaim.builder()
+            var resourceVersion = pvc.getMetadata().getResourceVersion();
+            var data = existing.get(new SyncKey(namespace, name));
+            if (data == null) {
+                data = DBPersistentVolumeClaim.builder()
                         .namespace(namespace)
                         .name(name)
                         .capacity(capacity)
                         .accessMode(accessMode)
                         .volumeName(volumeName)
                         .build();
+                data.setResourceVersion(resourceVersion);
+                data.setUid(pvc.getMetadata().getUid());
                 data.setCreatedAt(now);
                 data.setUpdatedAt(now);
-                list.add(data);
+                writer.add(data);
                 continue;
             }
 
-            if (List.of(env.getActiveProfiles()).contains("dev")) {
-                var data = repository.findByNamespaceAndName(namespace, name)
-                        .orElseThrow(() -> new NotFoundException("persistent volume claim not found"));
-                data.setCapacity(capacity);
-                data.setAccessMode(accessMode);
-                data.setVolumeName(volumeName);
-                data.setUpdatedAt(now);
-                list.add(data);
+            if (!dev || resourceVersion.equals(data.getResourceVersion()) || Objects.equals(data.getFingerprint(),
+                    DBPersistentVolumeClaim.fingerprint(capacity, accessMode, volumeName))) {
+                writer.skip();
+                continue;
             }
+
+            data.setCapacity(capacity);
+            data.setAccessMode(accessMode);
+            data.setVolumeName(volumeName);
+            data.setResourceVersion(resourceVersion);
+            data.setUid(pvc.getMetadata().getUid());
+            data.setUpdatedAt(now);
+            writer.add(data);
+        }
+    }
+
+    // a null namespace watches all namespaces
+    public void watch(String namespace) {
+        informers.inform(PersistentVolumeClaim.class, namespace, this::apply, this::remove);
+    }
+
+    public void apply(PersistentVolumeClaim pvc) {
+        var namespace = pvc.getMetadata().getNamespace();
+        var name = pvc.getMetadata().getName();
+        var capacity = pvc.getSpec().getResources().getRequests().get("storage").toString();
+        var accessMode = AccessMode.valueOf(pvc.getSpec().getAccessModes().get(0));
+        var volumeName = pvc.getSpec().getVolumeName();
+        var resourceVersion = pvc.getMetadata().getResourceVersion();
+        var now = Instant.now().getEpochSecond();
+        if (!checkpoints.isNewer(PersistentVolumeClaim.class, namespace, resourceVersion)) {
+            return;
+        }
+        var data = repository.findByNamespaceAndNameAndDeletedAtIsNull(namespace, name)
+                .flatMap(row -> cache.reload(DBPersistentVolumeClaim.class, row.getId(),
+                        repository::findByIdAndDeletedAtIsNull))
+                .orElse(null);
+        if (data == null) {
+            data = DBPersistentVolumeClaim.builder()
+                    .namespace(namespace)
+                    .name(name)
+                    .capacity(capacity)
+                    .accessMode(accessMode)
+                    .volumeName(volumeName)
+                    .build();
+            data.setCreatedAt(now);
+        } else if (Objects.equals(data.getResourceVersion(), resourceVersion)
+                || Objects.equals(data.getFingerprint(),
+                        DBPersistentVolumeClaim.fingerprint(capacity, accessMode, volumeName))) {
+            return;
+        }
+        data.setCapacity(capacity);
+        data.setAccessMode(accessMode);
+        data.setVolumeName(volumeName);
+        data.setResourceVersion(resourceVersion);
+        data.setUid(pvc.getMetadata().getUid());
+        data.setUpdatedAt(now);
+        log.info("applying persistent volume claim: {}", namespace + "/" + name);
+        try {
+            repository.save(data);
+            checkpoints.save(PersistentVolumeClaim.class, namespace, resourceVersion);
+        } catch (DataIntegrityViolationException e) {
+            log.warn("persistent volume claim already saved: {}/{}", namespace, name);
         }
-        return repository.saveAll(list);
+    }
+
+    public void remove(PersistentVolumeClaim pvc) {
+        var namespace = pvc.getMetadata().getNamespace();
+        var name = pvc.getMetadata().getName();
+        repository.findByNamespaceAndNameAndDeletedAtIsNull(namespace, name)
+                .flatMap(row -> cache.reload(DBPersistentVolumeClaim.class, row.getId(),
+                        repository::findByIdAndDeletedAtIsNull))
+                .ifPresent(data -> {
+                    data.setDeletedAt(Instant.now().getEpochSecond());
+                    log.info("removing persistent volume claim: {}", namespace + "/" + name);
+                    repository.save(data);
+                });
+        checkpoints.save(PersistentVolumeClaim.class, namespace, pvc.getMetadata().getResourceVersion());
     }
 }
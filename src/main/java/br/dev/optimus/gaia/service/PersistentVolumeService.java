@@ -1,23 +1,33 @@
 package br.dev.optimus.gaia.service;
 
 import java.time.Instant;
-import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.function.Supplier;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.core.env.Environment;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
 
 import br.dev.optimus.gaia.AccessMode;
 import br.dev.optimus.gaia.exception.BadRequestException;
 import br.dev.optimus.gaia.exception.NotFoundException;
+import br.dev.optimus.gaia.exception.PreconditionFailedException;
 import br.dev.optimus.gaia.model.DBPersistentVolume;
 import br.dev.optimus.gaia.repository.PersistentVolumeRepository;
 import br.dev.optimus.gaia.request.PersistentVolumeCreateRequest;
 import br.dev.optimus.gaia.request.PersistentVolumeUpdateRequest;
 import br.dev.optimus.gaia.response.PersistentVolumeResponse;
+import br.dev.optimus.gaia.sync.SyncPager;
+import br.dev.optimus.gaia.sync.SyncResult;
+import br.dev.optimus.gaia.sync.SyncTombstones;
+import br.dev.optimus.gaia.sync.SyncWriter;
 import io.fabric8.kubernetes.api.model.HostPathVolumeSource;
 import io.fabric8.kubernetes.api.model.NFSVolumeSource;
 import io.fabric8.kubernetes.api.model.PersistentVolume;
@@ -31,11 +41,27 @@ import io.fabric8.kubernetes.client.KubernetesClient;
 public class PersistentVolumeService {
     private final KubernetesClient client;
     private final PersistentVolumeRepository repository;
+    private final ResourceApplier applier;
+    private final InformerService informers;
+    private final SyncCheckpointService checkpoints;
+    private final EntityCache cache;
+    private final KubernetesThrottle throttle;
     private final Logger log = LoggerFactory.getLogger(PersistentVolumeService.class);
+    private final int batchSize;
+    private final long pageSize;
 
-    public PersistentVolumeService(KubernetesClient client, PersistentVolumeRepository repository) {
+    public PersistentVolumeService(KubernetesClient client, PersistentVolumeRepository repository,
+            ResourceApplier applier, InformerService informers, SyncCheckpointService checkpoints,
+            EntityCache cache, KubernetesThrottle throttle, Environment env) {
         this.client = client;
         this.repository = repository;
+        this.applier = applier;
+        this.informers = informers;
+        this.checkpoints = checkpoints;
+        this.cache = cache;
+        this.throttle = throttle;
+        this.batchSize = env.getProperty("gaia.sync.batch-size", Integer.class, 500);
+        this.pageSize = env.getProperty("gaia.sync.page-size", Long.class, 500L);
     }
 
     private PersistentVolume pv(DBPersistentVolume data) {
@@ -111,35 +137,46 @@ public class PersistentVolumeService {
     }
 
     public PersistentVolumeList list() {
-        return client.persistentVolumes().list();
+        return throttle.call(PersistentVolume.class, () -> client.persistentVolumes().list());
     }
 
     public List<DBPersistentVolume> getAll() {
         return repository.findByDeletedAtIsNull();
     }
 
+    public List<DBPersistentVolume> getAll(Long after, Limit limit) {
+        return repository.findByDeletedAtIsNullAndIdGreaterThanOrderByIdAsc(after, limit);
+    }
+
     public DBPersistentVolume get(long id) {
         return repository.findById(id).orElseThrow(() -> new NotFoundException("persistent volume not found"));
     }
 
-    public PersistentVolumeResponse get(String namespace, String name) {
-        log.info("get persistent volume: {}", namespace + "/" + name);
-        var pv = client.persistentVolumes().resource(pv(namespace, name)).get();
-        var data = repository.findByNamespaceAndName(namespace, name)
+    public PersistentVolumeResponse get(String namespace, String name, boolean live) {
+        log.debug("get persistent volume: {}", namespace + "/" + name);
+        Supplier<PersistentVolume> read = () -> throttle.call(PersistentVolume.class,
+                () -> client.persistentVolumes().resource(pv(namespace, name)).get());
+        var pv = live ? read.get() : informers.get(PersistentVolume.class, namespace, name, read);
+        var data = repository.findByNameAndDeletedAtIsNull(name)
                 .orElseThrow(() -> new NotFoundException("persistent volume not found"));
         return new PersistentVolumeResponse(data, pv);
     }
 
     public DBPersistentVolume create(DBPersistentVolume data) {
         var now = Instant.now().getEpochSecond();
-        if (repository.existsByNamespaceAndName(data.getNamespace(), data.getName())) {
+        if (repository.existsByNameAndDeletedAtIsNull(data.getName())) {
             throw new BadRequestException("persistent volume name already exists", "name");
         }
         validate(data);
-        client.persistentVolumes().resource(pv(data)).create();
-        data.setCreatedAt(now);
-        data.setUpdatedAt(now);
-        return repository.save(data);
+        return informers.write(PersistentVolume.class, null, data.getName(), () -> {
+            return applier.write(pv(data), true, created -> {
+                data.setResourceVersion(created.getMetadata().getResourceVersion());
+                data.setUid(created.getMetadata().getUid());
+                data.setCreatedAt(now);
+                data.setUpdatedAt(now);
+                return repository.save(data);
+            });
+        });
     }
 
     public DBPersistentVolume create(PersistentVolumeCreateRequest request) {
@@ -157,25 +194,47 @@ public class PersistentVolumeService {
 
     public DBPersistentVolume update(DBPersistentVolume data) {
         validate(data);
-        client.persistentVolumes().resource(pv(data)).update();
-        data.setUpdatedAt(Instant.now().getEpochSecond());
-        return repository.save(data);
+        var pv = pv(data);
+        pv.getMetadata().setResourceVersion(data.getResourceVersion());
+        return informers.write(PersistentVolume.class, null, data.getName(), () -> {
+            return applier.write(pv, false, updated -> {
+                data.setResourceVersion(updated.getMetadata().getResourceVersion());
+                data.setUid(updated.getMetadata().getUid());
+                data.setUpdatedAt(Instant.now().getEpochSecond());
+                return repository.save(data);
+            });
+        });
     }
 
     public DBPersistentVolume update(long id, PersistentVolumeUpdateRequest request) {
+        return update(id, request, null);
+    }
+
+    public DBPersistentVolume update(long id, PersistentVolumeUpdateRequest request, Long version) {
         var data = repository.findById(id).orElseThrow(() -> new NotFoundException("persistent volume not found"));
+        if (version != null && version != data.getVersion()) {
+            throw new PreconditionFailedException("persistent volume has been modified");
+        }
         data.setCapacity(request.capacity());
         data.setAccessMode(request.accessMode());
         data.setType(request.type());
         data.setConfigs(request.configs());
-        return update(data);
+        return applier.checked(() -> repository.lockVersion(data.getId()).orElse(-1L) == data.getVersion(),
+                "persistent volume has been modified", () -> update(data));
+    }
+
+    public long version(long id) {
+        return repository.findVersionById(id).orElseThrow(() -> new NotFoundException("persistent volume not found"));
     }
 
     public void delete(Long id) {
         var data = repository.findById(id).orElseThrow(() -> new NotFoundException("persistent volume not found"));
-        client.persistentVolumes().resource(pv(data)).delete();
-        data.setDeletedAt(Instant.now().getEpochSecond());
-        repository.save(data);
+        informers.write(PersistentVolume.class, null, data.getName(), () -> {
+            return applier.delete(pv(data), () -> {
+                data.setDeletedAt(Instant.now().getEpochSecond());
+                return repository.save(data);
+            });
+        });
     }
 
     private HashMap<String, String> getConfigs(NFSVolumeSource source) {
@@ -191,41 +250,192 @@ public class PersistentVolumeService {
         return configs;
     }
 
-    public List<DBPersistentVolume> sync() {
+    public DBPersistentVolume prepare(PersistentVolumeCreateRequest request) {
+        var data = DBPersistentVolume.builder()
+                .namespace(request.namespace())
+                .name(request.name())
+                .capacity(request.capacity())
+                .accessMode(request.accessMode())
+                .type(request.type())
+                .configs(request.configs())
+                .build();
+        validate(data);
+        return data;
+    }
+
+    // replaces the prepared rows of a batch by the stored ones carrying their content, the rows are looked up
+    // with a single query instead of one per row
+    public List<DBPersistentVolume> merge(List<DBPersistentVolume> prepared) {
+        var existing = new HashMap<String, DBPersistentVolume>();
+        var names = prepared.stream().map(DBPersistentVolume::getName).toList();
+        for (var row : repository.findByNameInAndDeletedAtIsNull(names)) {
+            existing.put(row.getName(), row);
+        }
+        return prepared.stream().map(data -> {
+            var row = existing.get(data.getName());
+            if (row == null) {
+                return data;
+            }
+            row.setCapacity(data.getCapacity());
+            row.setAccessMode(data.getAccessMode());
+            row.setType(data.getType());
+            row.setConfigs(data.getConfigs());
+            return row;
+        }).toList();
+    }
+
+    public void push(DBPersistentVolume data) {
+        var now = Instant.now().getEpochSecond();
+        var applied = applier.push(pv(data), data.getId() == 0);
+        data.setResourceVersion(applied.getMetadata().getResourceVersion());
+        data.setUid(applied.getMetadata().getUid());
+        if (data.getCreatedAt() == 0) {
+            data.setCreatedAt(now);
+        }
+        data.setUpdatedAt(now);
+        data.setDeletedAt(null);
+    }
+
+    public List<DBPersistentVolume> saveAll(List<DBPersistentVolume> data) {
+        return applier.saveAll(data.stream().map(this::pv).toList(), () -> repository.saveAll(data));
+    }
+
+    public SyncResult sync() {
         log.info("syncing persistent volumes");
-        var list = new ArrayList<DBPersistentVolume>();
-        for (var pv : client.persistentVolumes().list().getItems()) {
+        // a resumed shard has replayed every change since its checkpoint, deletes included, only a shard
+        // without a checkpoint or whose checkpoint expired lists every object and sweeps the missing rows
+        if (checkpoints.resume(PersistentVolume.class, null, client.persistentVolumes(), this::apply,
+                this::remove)) {
+            log.info("resumed persistent volumes");
+            return new SyncResult(0, 0, 0);
+        }
+        var started = Instant.now().getEpochSecond();
+        var writer = new SyncWriter<>(repository, batchSize);
+        var listed = new HashSet<String>();
+        var resourceVersion = SyncPager.forEach(
+                options -> throttle.call(PersistentVolume.class, () -> client.persistentVolumes().list(options)),
+                pageSize,
+                items -> {
+                    items.forEach(item -> listed.add(item.getMetadata().getName()));
+                    sync(items, writer);
+                    writer.flush();
+                });
+        checkpoints.save(PersistentVolume.class, null, resourceVersion);
+        var deleted = SyncTombstones.sweep(repository.findLive(started), listed, batchSize,
+                repository::markDeleted);
+        var result = writer.result(deleted);
+        log.info("synced persistent volumes: {} written, {} unchanged, {} deleted", result.written(), result.skipped(),
+                result.deleted());
+        return result;
+    }
+
+    private void sync(List<PersistentVolume> items, SyncWriter<DBPersistentVolume> writer) {
+        var names = items.stream().map(pv -> pv.getMetadata().getName()).toList();
+        var existing = new HashMap<String, DBPersistentVolume>();
+        for (var data : repository.findByNameInAndDeletedAtIsNull(names)) {
+            existing.put(data.getName(), data);
+        }
+        for (var pv : items) {
             var now = Instant.now().getEpochSecond();
-            var namespace = pv.getMetadata().getNamespace();
             var name = pv.getMetadata().getName();
             var capacity = pv.getSpec().getCapacity().get("storage").toString();
             var accessMode = AccessMode.valueOf(pv.getSpec().getAccessModes().get(0));
             var type = pv.getSpec().getNfs() != null ? "nfs" : "hostPath";
-            var configs = type == "nfs" ? getConfigs(pv.getSpec().getNfs()) : getConfigs(pv.getSpec().getHostPath());
-            if (!repository.existsByNamespaceAndName(pv.getMetadata().getNamespace(), pv.getMetadata().getName())) {
-                var data = DBPersistentVolume.builder()
-                        .namespace(namespace)
+            var configs = type.equals("nfs") ? getConfigs(pv.getSpec().getNfs()) : getConfigs(pv.getSpec().getHostPath());
+            var resourceVersion = pv.getMetadata().getResourceVersion();
+            var data = existing.get(name);
+            if (data == null) {
+                data = DBPersistentVolume.builder()
                         .name(name)
                         .capacity(capacity)
                         .accessMode(accessMode)
                         .type(type)
                         .configs(configs)
                         .build();
+                data.setResourceVersion(resourceVersion);
+                data.setUid(pv.getMetadata().getUid());
                 data.setCreatedAt(now);
                 data.setUpdatedAt(now);
-                list.add(data);
+                writer.add(data);
+                continue;
+            }
+
+            if (resourceVersion.equals(data.getResourceVersion()) || Objects.equals(data.getFingerprint(),
+                    DBPersistentVolume.fingerprint(capacity, accessMode, type, configs))) {
+                writer.skip();
                 continue;
             }
 
-            var data = repository.findByNamespaceAndName(namespace, name)
-                    .orElseThrow(() -> new NotFoundException("persistent volume not found"));
             data.setCapacity(capacity);
             data.setAccessMode(accessMode);
             data.setType(type);
             data.setConfigs(configs);
+            data.setResourceVersion(resourceVersion);
+            data.setUid(pv.getMetadata().getUid());
             data.setUpdatedAt(now);
-            list.add(data);
+            writer.add(data);
+        }
+    }
+
+    public void watch() {
+        informers.inform(PersistentVolume.class, null, this::apply, this::remove);
+    }
+
+    public void apply(PersistentVolume pv) {
+        var name = pv.getMetadata().getName();
+        var capacity = pv.getSpec().getCapacity().get("storage").toString();
+        var accessMode = AccessMode.valueOf(pv.getSpec().getAccessModes().get(0));
+        var type = pv.getSpec().getNfs() != null ? "nfs" : "hostPath";
+        var configs = type.equals("nfs") ? getConfigs(pv.getSpec().getNfs()) : getConfigs(pv.getSpec().getHostPath());
+        var resourceVersion = pv.getMetadata().getResourceVersion();
+        var now = Instant.now().getEpochSecond();
+        if (!checkpoints.isNewer(PersistentVolume.class, null, resourceVersion)) {
+            return;
+        }
+        var data = repository.findByNameAndDeletedAtIsNull(name)
+                .flatMap(row -> cache.reload(DBPersistentVolume.class, row.getId(),
+                        repository::findByIdAndDeletedAtIsNull))
+                .orElse(null);
+        if (data == null) {
+            data = DBPersistentVolume.builder()
+                    .name(name)
+                    .capacity(capacity)
+                    .accessMode(accessMode)
+                    .type(type)
+                    .configs(configs)
+                    .build();
+            data.setCreatedAt(now);
+        } else if (Objects.equals(data.getResourceVersion(), resourceVersion)
+                || Objects.equals(data.getFingerprint(), DBPersistentVolume.fingerprint(capacity, accessMode, type,
+                        configs))) {
+            return;
+        }
+        data.setCapacity(capacity);
+        data.setAccessMode(accessMode);
+        data.setType(type);
+        data.setConfigs(configs);
+        data.setResourceVersion(resourceVersion);
+        data.setUid(pv.getMetadata().getUid());
+        data.setUpdatedAt(now);
+        log.info("applying persistent volume: {}", name);
+        try {
+            repository.save(data);
+            checkpoints.save(PersistentVolume.class, null, resourceVersion);
+        } catch (DataIntegrityViolationException e) {
+            log.warn("persistent volume already saved: {}", name);
         }
-        return repository.saveAll(list);
+    }
+
+    public void remove(PersistentVolume pv) {
+        var name = pv.getMetadata().getName();
+        repository.findByNameAndDeletedAtIsNull(name)
+                .flatMap(row -> cache.reload(DBPersistentVolume.class, row.getId(),
+                        repository::findByIdAndDeletedAtIsNull))
+                .ifPresent(data -> {
+                    data.setDeletedAt(Instant.now().getEpochSecond());
+                    log.info("removing persistent volume: {}", name);
+                    repository.save(data);
+                });
+        checkpoints.save(PersistentVolume.class, null, pv.getMetadata().getResourceVersion());
     }
 }
@@ -0,0 +1,187 @@
+package br.dev.optimus.gaia.service;
+
+import java.net.HttpURLConnection;
+import java.time.Instant;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.env.Environment;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import br.dev.optimus.gaia.exception.PreconditionFailedException;
+import br.dev.optimus.gaia.model.DBOutbox;
+import br.dev.optimus.gaia.repository.OutboxRepository;
+import io.fabric8.kubernetes.api.model.HasMetadata;
+import io.fabric8.kubernetes.api.model.Secret;
+import io.fabric8.kubernetes.client.KubernetesClient;
+import io.fabric8.kubernetes.client.KubernetesClientException;
+import io.fabric8.kubernetes.client.dsl.base.PatchContext;
+import io.fabric8.kubernetes.client.dsl.base.PatchType;
+
+@Service
+public class ResourceApplier {
+    public static final String APPLY = "apply";
+    public static final String DELETE = "delete";
+
+    private final KubernetesClient client;
+    private final OutboxRepository outbox;
+    private final TransactionTemplate transaction;
+    private final KubernetesThrottle throttle;
+    private final boolean serverSideApply;
+    private final boolean forceConflicts;
+    private final boolean useOutbox;
+    private final String fieldManager;
+    private final Logger log = LoggerFactory.getLogger(ResourceApplier.class);
+
+    public ResourceApplier(KubernetesClient client, OutboxRepository outbox,
+            PlatformTransactionManager transactionManager, KubernetesThrottle throttle, Environment env) {
+        this.client = client;
+        this.outbox = outbox;
+        this.transaction = new TransactionTemplate(transactionManager);
+        this.throttle = throttle;
+        this.serverSideApply = env.getProperty("gaia.kubernetes.server-side-apply", Boolean.class, true);
+        this.forceConflicts = env.getProperty("gaia.kubernetes.force-conflicts", Boolean.class, true);
+        this.useOutbox = env.getProperty("gaia.write-mode", "direct").equals("outbox");
+        this.fieldManager = env.getProperty("gaia.kubernetes.field-manager", "gaia");
+    }
+
+    // a plain create fails atomically with a conflict when the object already exists, server-side apply
+    // would adopt it. Only updates go through server-side apply
+    public <T extends HasMetadata> T create(T item) {
+        return throttle.call(item.getClass(), () -> client.resource(item).create());
+    }
+
+    // a resourceVersion on the item is a precondition, the api server rejects the update with a
+    // conflict when the object changed since that version
+    public <T extends HasMetadata> T update(T item) {
+        if (!serverSideApply) {
+            return throttle.call(item.getClass(), () -> client.resource(item).update());
+        }
+        return apply(item, item.getMetadata().getResourceVersion());
+    }
+
+    // applies never fail on a stale resourceVersion. Fields set by the create belong to the client's default
+    // manager and fields edited with kubectl or helm to theirs, gaia.kubernetes.force-conflicts takes them
+    // over, without it the update fails with a conflict
+    public <T extends HasMetadata> T apply(T item) {
+        return apply(item, null);
+    }
+
+    private <T extends HasMetadata> T apply(T item, String resourceVersion) {
+        item.getMetadata().setResourceVersion(resourceVersion);
+        item.getMetadata().setManagedFields(null);
+        return throttle.call(item.getClass(), () -> {
+            var resource = client.resource(item).fieldManager(fieldManager);
+            return forceConflicts ? resource.forceConflicts().serverSideApply() : resource.serverSideApply();
+        });
+    }
+
+    // runs the write in one transaction after the check, the check locks the row so no other write can
+    // change it before the save and a failed check never reaches the cluster. A conflict on the cluster
+    // or on the save fails the precondition with the given message
+    public <R> R checked(BooleanSupplier check, String modified, Supplier<R> write) {
+        try {
+            return transaction.execute(status -> {
+                if (!check.getAsBoolean()) {
+                    throw new PreconditionFailedException(modified);
+                }
+                return write.get();
+            });
+        } catch (OptimisticLockingFailureException e) {
+            throw new PreconditionFailedException(modified);
+        } catch (KubernetesClientException e) {
+            if (e.getCode() != HttpURLConnection.HTTP_CONFLICT) {
+                throw e;
+            }
+            throw new PreconditionFailedException(modified);
+        }
+    }
+
+    // secrets are always written directly, their values must never be stored in the outbox
+    public boolean queued(HasMetadata item) {
+        return useOutbox && !(item instanceof Secret);
+    }
+
+    // in outbox mode the row and the outbox entry are committed in one local transaction,
+    // the object is applied later by the reconciler and save receives the desired object
+    public <T extends HasMetadata, R> R write(T item, boolean create, Function<T, R> save) {
+        if (queued(item)) {
+            return transaction.execute(status -> {
+                enqueue(item, APPLY);
+                return save.apply(item);
+            });
+        }
+        return save.apply(create ? create(item) : update(item));
+    }
+
+    // sends a JSON merge patch with only the changed fields, the outbox still queues the
+    // whole object since it is applied with server-side apply
+    public <T extends HasMetadata, R> R patch(T item, JsonNode patch, Function<T, R> save) {
+        if (queued(item)) {
+            return write(item, false, save);
+        }
+        var context = new PatchContext.Builder()
+                .withPatchType(PatchType.JSON_MERGE)
+                .withFieldManager(fieldManager)
+                .build();
+        return save.apply(throttle.call(item.getClass(), () -> client.resource(item).patch(context, patch.toString())));
+    }
+
+    public <T extends HasMetadata, R> R delete(T item, Supplier<R> save) {
+        if (queued(item)) {
+            return transaction.execute(status -> {
+                enqueue(item, DELETE);
+                return save.get();
+            });
+        }
+        delete(item);
+        return save.get();
+    }
+
+    // batches send their objects one at a time and save the rows of a kind together, a queued
+    // object is not sent here and its entry is added by saveAll in the same transaction as the rows
+    public <T extends HasMetadata> T push(T item, boolean create) {
+        if (queued(item)) {
+            return item;
+        }
+        return create ? create(item) : update(item);
+    }
+
+    public <R> R saveAll(List<? extends HasMetadata> items, Supplier<R> save) {
+        if (items.stream().noneMatch(this::queued)) {
+            return save.get();
+        }
+        return transaction.execute(status -> {
+            items.stream().filter(this::queued).forEach(item -> enqueue(item, APPLY));
+            return save.get();
+        });
+    }
+
+    public void delete(HasMetadata item) {
+        throttle.run(item.getClass(), () -> client.resource(item).delete());
+    }
+
+    // only the latest desired state of an object is kept, so a retried entry can never
+    // overwrite a newer one
+    private void enqueue(HasMetadata item, String action) {
+        var kind = item.getKind();
+        var namespace = item.getMetadata().getNamespace() == null ? "" : item.getMetadata().getNamespace();
+        var name = item.getMetadata().getName();
+        outbox.deleteEntries(kind, namespace, name);
+        var entry = new DBOutbox(kind, namespace, name, action, client.getKubernetesSerialization().asJson(item));
+        var now = Instant.now().getEpochSecond();
+        entry.setCreatedAt(now);
+        entry.setNextAttemptAt(now);
+        log.info("queueing outbox entry: {}", entry);
+        outbox.save(entry);
+    }
+}
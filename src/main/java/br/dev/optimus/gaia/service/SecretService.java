@@ -1,35 +1,65 @@
 package br.dev.optimus.gaia.service;
 
 import java.time.Instant;
-import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.stream.Collectors;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.core.env.Environment;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
 
 import br.dev.optimus.gaia.exception.BadRequestException;
 import br.dev.optimus.gaia.exception.NotFoundException;
+import br.dev.optimus.gaia.exception.PreconditionFailedException;
 import br.dev.optimus.gaia.model.DBSecret;
 import br.dev.optimus.gaia.repository.SecretRepository;
 import br.dev.optimus.gaia.request.SecretRequest;
+import br.dev.optimus.gaia.sync.SyncKey;
+import br.dev.optimus.gaia.sync.SyncPager;
+import br.dev.optimus.gaia.sync.SyncResult;
+import br.dev.optimus.gaia.sync.SyncTombstones;
+import br.dev.optimus.gaia.sync.SyncWriter;
+import io.fabric8.kubernetes.api.model.Secret;
 import io.fabric8.kubernetes.client.KubernetesClient;
 
 @Service
 public class SecretService {
     private final KubernetesClient client;
     private final SecretRepository repository;
+    private final ResourceApplier applier;
+    private final InformerService informers;
+    private final SyncCheckpointService checkpoints;
+    private final EntityCache cache;
+    private final KubernetesThrottle throttle;
+    private final WriteCoalescer coalescer;
     private final Environment env;
     private final Logger log = LoggerFactory.getLogger(ConfigMapService.class);
     private final String namespace;
+    private final int batchSize;
+    private final long pageSize;
 
-    public SecretService(KubernetesClient client, SecretRepository repository, Environment env) {
+    public SecretService(KubernetesClient client, SecretRepository repository, ResourceApplier applier,
+            InformerService informers, SyncCheckpointService checkpoints, EntityCache cache,
+            WriteCoalescer coalescer, KubernetesThrottle throttle, Environment env) {
         this.client = client;
         this.repository = repository;
+        this.applier = applier;
+        this.informers = informers;
+        this.checkpoints = checkpoints;
+        this.cache = cache;
+        this.throttle = throttle;
+        this.coalescer = coalescer;
         this.env = env;
         this.namespace = env.getProperty("kubernetes.namespace", "default");
+        this.batchSize = env.getProperty("gaia.sync.batch-size", Integer.class, 500);
+        this.pageSize = env.getProperty("gaia.sync.page-size", Long.class, 500L);
     }
 
     private void validate(DBSecret data) {
@@ -52,7 +82,7 @@ public class SecretService {
     }
 
     public DBSecret get(String namespace, String name) {
-        return repository.findByNamespaceAndName(namespace, name)
+        return repository.findByNamespaceAndNameAndDeletedAtIsNull(namespace, name)
                 .orElseThrow(() -> new NotFoundException("secret not found"));
     }
 
@@ -60,14 +90,23 @@ public class SecretService {
         return repository.findByDeletedAtIsNull();
     }
 
+    public List<DBSecret> list(Long after, Limit limit) {
+        return repository.findByDeletedAtIsNullAndIdGreaterThanOrderByIdAsc(after, limit);
+    }
+
     public DBSecret create(DBSecret data, Map<String, String> secrets) {
         var now = Instant.now().getEpochSecond();
         validate(data);
         data.setCreatedAt(now);
         data.setUpdatedAt(now);
-        client.secrets().resource(data.secret(secrets)).create();
-        log.info("creating secret: {}", data);
-        return repository.save(data);
+        return informers.write(Secret.class, data.getNamespace(), data.getName(), () -> {
+            return applier.write(data.secret(secrets), true, created -> {
+                data.setResourceVersion(created.getMetadata().getResourceVersion());
+                data.setUid(created.getMetadata().getUid());
+                log.info("creating secret: {}", data);
+                return repository.save(data);
+            });
+        });
     }
 
     public DBSecret create(SecretRequest.Create request) {
@@ -83,54 +122,222 @@ public class SecretService {
         var now = Instant.now().getEpochSecond();
         validate(data);
         data.setUpdatedAt(now);
-        client.secrets().resource(data.secret(secrets)).update();
-        log.info("updating secret: {}", data);
-        return repository.save(data);
+        var secret = data.secret(secrets);
+        secret.getMetadata().setResourceVersion(data.getResourceVersion());
+        return informers.write(Secret.class, data.getNamespace(), data.getName(), () -> {
+            return applier.write(secret, false, updated -> {
+                data.setResourceVersion(updated.getMetadata().getResourceVersion());
+                data.setUid(updated.getMetadata().getUid());
+                log.info("updating secret: {}", data);
+                return repository.save(data);
+            });
+        });
     }
 
     public DBSecret update(Long id, SecretRequest.Update request) {
+        return update(id, request, null);
+    }
+
+    public DBSecret update(Long id, SecretRequest.Update request, Long version) {
         var data = get(id);
+        if (version != null && version != data.getVersion()) {
+            throw new PreconditionFailedException("secret has been modified");
+        }
+        if (version != null) {
+            return update(data, request);
+        }
+        return coalescer.submit(Secret.class, data.getNamespace(), data.getName(), () -> update(get(id), request));
+    }
+
+    private DBSecret update(DBSecret data, SecretRequest.Update request) {
         data.setKeys(request.data());
-        return update(data, request.data());
+        return applier.checked(() -> repository.lockVersion(data.getId()).orElse(-1L) == data.getVersion(),
+                "secret has been modified", () -> update(data, request.data()));
+    }
+
+    public long version(Long id) {
+        return repository.findVersionById(id).orElseThrow(() -> new NotFoundException("secret not found"));
     }
 
     public void delete(Long id) {
         log.info("deleting secret: {}", id);
         var data = get(id);
-        client.secrets().resource(data.secret()).delete();
-        data.setDeletedAt(Instant.now().getEpochSecond());
-        repository.save(data);
+        informers.write(Secret.class, data.getNamespace(), data.getName(), () -> {
+            return applier.delete(data.secret(), () -> {
+                data.setDeletedAt(Instant.now().getEpochSecond());
+                return repository.save(data);
+            });
+        });
+    }
+
+    public DBSecret prepare(SecretRequest.Create request) {
+        var data = DBSecret.builder()
+                .name(request.name())
+                .namespace(request.namespace())
+                .keys(request.data())
+                .build();
+        validate(data);
+        return data;
+    }
+
+    // replaces the prepared rows of a batch by the stored ones carrying their content, the rows are looked up
+    // with one query per namespace instead of one per row
+    public List<DBSecret> merge(List<DBSecret> prepared) {
+        var existing = new HashMap<SyncKey, DBSecret>();
+        var names = prepared.stream().collect(Collectors.groupingBy(DBSecret::getNamespace,
+                Collectors.mapping(DBSecret::getName, Collectors.toSet())));
+        names.forEach((namespace, batch) -> {
+            for (var row : repository.findByNamespaceAndNameInAndDeletedAtIsNull(namespace, batch)) {
+                existing.put(new SyncKey(row.getNamespace(), row.getName()), row);
+            }
+        });
+        return prepared.stream().map(data -> {
+            var row = existing.get(new SyncKey(data.getNamespace(), data.getName()));
+            if (row == null) {
+                return data;
+            }
+            row.setKeys(data.getKeys());
+            return row;
+        }).toList();
     }
 
-    public void sync() {
-        log.info("syncing secrets");
-        var list = new ArrayList<DBSecret>();
-        for (var s : client.secrets().inNamespace(namespace).list().getItems()) {
+    public void push(DBSecret data, Map<String, String> secrets) {
+        var now = Instant.now().getEpochSecond();
+        var secret = data.secret(new HashMap<>(secrets));
+        var applied = applier.push(secret, data.getId() == null);
+        data.setResourceVersion(applied.getMetadata().getResourceVersion());
+        data.setUid(applied.getMetadata().getUid());
+        if (data.getCreatedAt() == null) {
+            data.setCreatedAt(now);
+        }
+        data.setUpdatedAt(now);
+        data.setDeletedAt(null);
+    }
+
+    public List<DBSecret> saveAll(List<DBSecret> data) {
+        return repository.saveAll(data);
+    }
+
+    public SyncResult sync(String namespace) {
+        log.info("syncing secrets in {}", namespace);
+        // a resumed shard has replayed every change since its checkpoint, deletes included, only a shard
+        // without a checkpoint or whose checkpoint expired lists every object and sweeps the missing rows
+        if (checkpoints.resume(Secret.class, namespace, client.secrets().inNamespace(namespace), this::apply,
+                this::remove)) {
+            log.info("resumed secrets in {}", namespace);
+            return new SyncResult(0, 0, 0);
+        }
+        var dev = List.of(env.getActiveProfiles()).contains("dev");
+        var started = Instant.now().getEpochSecond();
+        var writer = new SyncWriter<>(repository, batchSize);
+        var listed = new HashSet<String>();
+        var resourceVersion = SyncPager.forEach(
+                options -> throttle.call(Secret.class, () -> client.secrets().inNamespace(namespace).list(options)),
+                pageSize, items -> {
+                    items.forEach(item -> listed.add(item.getMetadata().getName()));
+                    sync(namespace, items, writer, dev);
+                    writer.flush();
+                });
+        checkpoints.save(Secret.class, namespace, resourceVersion);
+        var deleted = SyncTombstones.sweep(repository.findLive(namespace, started), listed, batchSize,
+                repository::markDeleted);
+        var result = writer.result(deleted);
+        log.info("synced secrets in {}: {} written, {} unchanged, {} deleted", namespace, result.written(),
+                result.skipped(), result.deleted());
+        return result;
+    }
+
+    private void sync(String namespace, List<Secret> items, SyncWriter<DBSecret> writer, boolean dev) {
+        var names = items.stream().map(s -> s.getMetadata().getName()).toList();
+        var existing = new HashMap<SyncKey, DBSecret>();
+        for (var secret : repository.findByNamespaceAndNameInAndDeletedAtIsNull(namespace, names)) {
+            existing.put(new SyncKey(secret.getNamespace(), secret.getName()), secret);
+        }
+        for (var s : items) {
             var name = s.getMetadata().getName();
-            var data = s.getData();
+            var resourceVersion = s.getMetadata().getResourceVersion();
+            var keys = s.getData() == null ? List.<String>of() : s.getData().keySet().stream().toList();
             var now = Instant.now().getEpochSecond();
-            if (!repository.existsByNamespaceAndName(namespace, name)) {
-                var secret = DBSecret.builder()
+            var secret = existing.get(new SyncKey(namespace, name));
+            if (secret == null) {
+                secret = DBSecret.builder()
                         .name(name)
                         .namespace(namespace)
-                        .keys(data)
+                        .keys(keys)
                         .build();
+                secret.setResourceVersion(resourceVersion);
+                secret.setUid(s.getMetadata().getUid());
                 secret.setCreatedAt(now);
                 secret.setUpdatedAt(now);
                 log.info("creating secret: {}", secret);
-                list.add(secret);
+                writer.add(secret);
                 continue;
             }
-            if (List.of(env.getActiveProfiles()).contains("dev")) {
-                var secret = get(namespace, name);
-                secret.setUpdatedAt(now);
-                secret.setKeys(data);
-                log.info("updating secret: {}", secret);
-                list.add(secret);
+            if (!dev || resourceVersion.equals(secret.getResourceVersion())
+                    || Objects.equals(secret.getFingerprint(), DBSecret.fingerprint(keys))) {
+                writer.skip();
+                continue;
             }
+            secret.setUpdatedAt(now);
+            secret.setKeys(keys);
+            secret.setResourceVersion(resourceVersion);
+            secret.setUid(s.getMetadata().getUid());
+            log.info("updating secret: {}", secret);
+            writer.add(secret);
         }
-        if (!list.isEmpty()) {
-            repository.saveAll(list);
+    }
+
+    // a null namespace watches all namespaces
+    public void watch(String namespace) {
+        informers.inform(Secret.class, namespace, this::apply, this::remove);
+    }
+
+    public void apply(Secret s) {
+        var namespace = s.getMetadata().getNamespace();
+        var name = s.getMetadata().getName();
+        var resourceVersion = s.getMetadata().getResourceVersion();
+        var keys = s.getData() == null ? List.<String>of() : s.getData().keySet().stream().toList();
+        var now = Instant.now().getEpochSecond();
+        if (!checkpoints.isNewer(Secret.class, namespace, resourceVersion)) {
+            return;
+        }
+        var secret = repository.findByNamespaceAndNameAndDeletedAtIsNull(namespace, name)
+                .flatMap(row -> cache.reload(DBSecret.class, row.getId(), repository::findByIdAndDeletedAtIsNull))
+                .orElse(null);
+        if (secret == null) {
+            secret = DBSecret.builder()
+                    .name(name)
+                    .namespace(namespace)
+                    .keys(keys)
+                    .build();
+            secret.setCreatedAt(now);
+        } else if (Objects.equals(secret.getResourceVersion(), resourceVersion)
+                || Objects.equals(secret.getFingerprint(), DBSecret.fingerprint(keys))) {
+            return;
+        }
+        secret.setKeys(keys);
+        secret.setResourceVersion(resourceVersion);
+        secret.setUid(s.getMetadata().getUid());
+        secret.setUpdatedAt(now);
+        log.info("applying secret: {}", secret);
+        try {
+            repository.save(secret);
+            checkpoints.save(Secret.class, namespace, resourceVersion);
+        } catch (DataIntegrityViolationException e) {
+            log.warn("secret already saved: {}/{}", namespace, name);
         }
     }
+
+    public void remove(Secret s) {
+        var namespace = s.getMetadata().getNamespace();
+        var name = s.getMetadata().getName();
+        repository.findByNamespaceAndNameAndDeletedAtIsNull(namespace, name)
+                .flatMap(row -> cache.reload(DBSecret.class, row.getId(), repository::findByIdAndDeletedAtIsNull))
+                .ifPresent(secret -> {
+                    secret.setDeletedAt(Instant.now().getEpochSecond());
+                    log.info("removing secret: {}", secret);
+                    repository.save(secret);
+                });
+        checkpoints.save(Secret.class, namespace, s.getMetadata().getResourceVersion());
+    }
 }
@@ -1,33 +1,50 @@
 package br.dev.optimus.gaia.service;
 
 import java.time.Instant;
+import java.util.HashMap;
 import java.util.List;
+import java.util.stream.Collectors;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.env.Environment;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+
 import br.dev.optimus.gaia.exception.BadRequestException;
 import br.dev.optimus.gaia.exception.NotFoundException;
+import br.dev.optimus.gaia.exception.PreconditionFailedException;
 import br.dev.optimus.gaia.model.DBStatefulSet;
+import br.dev.optimus.gaia.model.DBVolume;
+import br.dev.optimus.gaia.repository.StatefulSetOverview;
 import br.dev.optimus.gaia.repository.StatefulSetRepository;
+import br.dev.optimus.gaia.repository.StatefulSetSummary;
 import br.dev.optimus.gaia.request.StatefulSetRequest;
+import br.dev.optimus.gaia.response.ListStreamer.Keyset;
+import br.dev.optimus.gaia.response.StatefulSetResponse;
+import br.dev.optimus.gaia.sync.SyncKey;
+import io.fabric8.kubernetes.api.model.apps.StatefulSet;
 import io.fabric8.kubernetes.client.KubernetesClient;
 
 @Service
 public class StatefulSetService {
     private final KubernetesClient client;
     private final StatefulSetRepository repository;
+    private final ResourceApplier applier;
     private final Environment env;
     private final Logger log = LoggerFactory.getLogger(StatefulSetService.class);
     @Value("${kubernetes.namespace}")
     private String namespace;
 
-    public StatefulSetService(KubernetesClient client, StatefulSetRepository repository, Environment env) {
+    public StatefulSetService(KubernetesClient client, StatefulSetRepository repository, ResourceApplier applier,
+            Environment env) {
         this.client = client;
         this.repository = repository;
+        this.applier = applier;
         this.env = env;
     }
 
@@ -55,6 +72,36 @@ public class StatefulSetService {
         return repository.findByDeletedAtIsNull();
     }
 
+    public List<DBStatefulSet> list(Long after, Limit limit) {
+        return repository.findByDeletedAtIsNullAndIdGreaterThanOrderByIdAsc(after, limit);
+    }
+
+    public List<StatefulSetOverview> overviews(Long after, Limit limit) {
+        return repository.findOverviews(after, limit);
+    }
+
+    // exactly one criterion is searched, each one is a single containment lookup
+    public Keyset<StatefulSetSummary> search(String image, String envFrom, String claim) {
+        var criteria = (image == null ? 0 : 1) + (envFrom == null ? 0 : 1) + (claim == null ? 0 : 1);
+        if (criteria != 1) {
+            throw new BadRequestException("exactly one of image, env_from or claim is required", "search");
+        }
+        var filter = JsonNodeFactory.instance.arrayNode();
+        if (image != null) {
+            filter.addObject().put("image", image);
+        } else if (envFrom != null) {
+            filter.addObject().putArray("env_from").addObject().put("name", envFrom);
+        } else {
+            filter.addObject()
+                    .put("type", DBVolume.Type.PersistentVolumeClaim.name())
+                    .putObject("configs").put("claim_name", claim);
+        }
+        var json = filter.toString();
+        return claim == null
+                ? (after, limit) -> repository.findByContainer(json, after, limit.max())
+                : (after, limit) -> repository.findByVolume(json, after, limit.max());
+    }
+
     public DBStatefulSet get(Long id) {
         log.info("get statefulset: {}", id);
         return repository.findById(id).orElseThrow(() -> new NotFoundException("statefulset not found"));
@@ -63,14 +110,15 @@ public class StatefulSetService {
     public DBStatefulSet create(DBStatefulSet data) {
         var now = Instant.now().getEpochSecond();
         validate(data);
-        if (repository.existsByNamespaceAndName(data.getNamespace(), data.getName())) {
+        if (repository.existsByNamespaceAndNameAndDeletedAtIsNull(data.getNamespace(), data.getName())) {
             throw new BadRequestException("statefulset name already exists", "name");
         }
-        client.apps().statefulSets().resource(data.statefulSet()).create();
         data.setCreatedAt(now);
         data.setUpdatedAt(now);
-        log.info("creating statefulset: {}", data);
-        return repository.save(data);
+        return applier.write(data.statefulSet(), true, created -> {
+            log.info("creating statefulset: {}", data);
+            return repository.save(data);
+        });
     }
 
     public DBStatefulSet create(StatefulSetRequest.Create request) {
@@ -85,28 +133,106 @@ public class StatefulSetService {
         return create(data);
     }
 
-    public DBStatefulSet update(DBStatefulSet data) {
+    // the manifest rendered from the stored row is compared with the new one, nothing is
+    // sent when they are equal and only the changed fields are patched otherwise
+    public StatefulSetResponse update(DBStatefulSet data, StatefulSet stored) {
         validate(data);
-        client.apps().statefulSets().resource(data.statefulSet()).update();
+        var serialization = client.getKubernetesSerialization();
+        var statefulSet = data.statefulSet();
+        var diff = MergePatch.diff(serialization.convertValue(stored, JsonNode.class),
+                serialization.convertValue(statefulSet, JsonNode.class));
+        if (diff.isEmpty()) {
+            log.info("statefulset unchanged: {}", data);
+            return new StatefulSetResponse(data, diff);
+        }
         data.setUpdatedAt(Instant.now().getEpochSecond());
-        log.info("updating statefulset: {}", data);
-        return repository.save(data);
+        var saved = applier.patch(statefulSet, diff, patched -> {
+            log.info("updating statefulset: {}, diff: {}", data, diff);
+            return repository.save(data);
+        });
+        return new StatefulSetResponse(saved, diff);
+    }
+
+    public StatefulSetResponse update(Long id, StatefulSetRequest.Update request) {
+        return update(id, request, null);
     }
 
-    public DBStatefulSet update(Long id, StatefulSetRequest.Update request) {
+    public StatefulSetResponse update(Long id, StatefulSetRequest.Update request, Long version) {
         var data = get(id);
+        if (version != null && version != data.getVersion()) {
+            throw new PreconditionFailedException("statefulset has been modified");
+        }
+        var stored = data.statefulSet();
         data.setReplicas(request.replicas());
         data.setInitContainers(request.initContainers());
         data.setContainers(request.containers());
         data.setVolumes(request.volumes());
-        return update(data);
+        return applier.checked(() -> repository.lockVersion(data.getId()).orElse(-1L) == data.getVersion(),
+                "statefulset has been modified", () -> update(data, stored));
+    }
+
+    public long version(Long id) {
+        return repository.findVersionById(id).orElseThrow(() -> new NotFoundException("statefulset not found"));
     }
 
     public void delete(Long id) {
         log.info("deleting statefulset: {}", id);
         var data = get(id);
-        client.apps().statefulSets().resource(data.statefulSet()).delete();
-        data.setDeletedAt(Instant.now().getEpochSecond());
-        repository.save(data);
+        applier.delete(data.statefulSet(), () -> {
+            data.setDeletedAt(Instant.now().getEpochSecond());
+            return repository.save(data);
+        });
+    }
+
+    public DBStatefulSet prepare(StatefulSetRequest.Create request) {
+        var data = DBStatefulSet.builder()
+                .namespace(request.namespace())
+                .name(request.name())
+                .replicas(request.replicas() == null ? 0 : request.replicas())
+                .initContainers(request.initContainers())
+                .containers(request.containers())
+                .volumes(request.volumes())
+                .build();
+        validate(data);
+        return data;
+    }
+
+    // replaces the prepared rows of a batch by the stored ones carrying their content, the rows are looked up
+    // with one query per namespace instead of one per row
+    public List<DBStatefulSet> merge(List<DBStatefulSet> prepared) {
+        var existing = new HashMap<SyncKey, DBStatefulSet>();
+        var names = prepared.stream().collect(Collectors.groupingBy(DBStatefulSet::getNamespace,
+                Collectors.mapping(DBStatefulSet::getName, Collectors.toSet())));
+        names.forEach((namespace, batch) -> {
+            for (var row : repository.findByNamespaceAndNameInAndDeletedAtIsNull(namespace, batch)) {
+                existing.put(new SyncKey(row.getNamespace(), row.getName()), row);
+            }
+        });
+        return prepared.stream().map(data -> {
+            var row = existing.get(new SyncKey(data.getNamespace(), data.getName()));
+            if (row == null) {
+                return data;
+            }
+            row.setReplicas(data.getReplicas());
+            row.setInitContainers(data.getInitContainers());
+            row.setContainers(data.getContainers());
+            row.setVolumes(data.getVolumes());
+            return row;
+        }).toList();
+    }
+
+    public void push(DBStatefulSet data) {
+        var now = Instant.now().getEpochSecond();
+        if (data.getId() == null) {
+            data.setCreatedAt(now);
+        }
+        applier.push(data.statefulSet(), data.getId() == null);
+        data.setUpdatedAt(now);
+        data.setDeletedAt(null);
+    }
+
+    public List<DBStatefulSet> saveAll(List<DBStatefulSet> data) {
+        return applier.saveAll(data.stream().map(DBStatefulSet::statefulSet).toList(),
+                () -> repository.saveAll(data));
     }
 }
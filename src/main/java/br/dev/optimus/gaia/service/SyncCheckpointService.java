@@ -0,0 +1,175 @@
+package br.dev.optimus.gaia.service;
+
+import java.time.Instant;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Service;
+
+import br.dev.optimus.gaia.model.DBSyncCheckpoint;
+import br.dev.optimus.gaia.repository.SyncCheckpointRepository;
+import io.fabric8.kubernetes.api.model.HasMetadata;
+import io.fabric8.kubernetes.api.model.KubernetesResourceList;
+import io.fabric8.kubernetes.api.model.ListOptionsBuilder;
+import io.fabric8.kubernetes.client.KubernetesClientException;
+import io.fabric8.kubernetes.client.Watcher;
+import io.fabric8.kubernetes.client.WatcherException;
+import io.fabric8.kubernetes.client.dsl.Listable;
+import io.fabric8.kubernetes.client.dsl.Watchable;
+
+@Service
+public class SyncCheckpointService {
+    private final SyncCheckpointRepository repository;
+    private final KubernetesThrottle throttle;
+    private final long resumeTimeout;
+    private final long resumeIdle;
+    private final Logger log = LoggerFactory.getLogger(SyncCheckpointService.class);
+    private final Map<String, String> versions = new ConcurrentHashMap<>();
+
+    public SyncCheckpointService(SyncCheckpointRepository repository, KubernetesThrottle throttle, Environment env) {
+        this.repository = repository;
+        this.throttle = throttle;
+        this.resumeTimeout = env.getProperty("gaia.sync.resume-timeout", Long.class, 5000L);
+        this.resumeIdle = env.getProperty("gaia.sync.resume-idle", Long.class, 250L);
+    }
+
+    private String namespace(String namespace) {
+        return namespace == null ? "" : namespace;
+    }
+
+    public Optional<String> get(Class<?> type, String namespace) {
+        var kind = type.getSimpleName();
+        var version = versions.computeIfAbsent(kind + "/" + namespace(namespace),
+                key -> repository.findByKindAndNamespace(kind, namespace(namespace))
+                        .map(DBSyncCheckpoint::getResourceVersion)
+                        .orElse(""));
+        return version.isEmpty() ? Optional.empty() : Optional.of(version);
+    }
+
+    // resourceVersion is opaque to clients, but the api server hands out etcd
+    // revisions, so numeric versions are compared and anything else counts as newer
+    public boolean isNewer(Class<?> type, String namespace, String resourceVersion) {
+        var checkpoint = get(type, namespace);
+        if (checkpoint.isEmpty() || resourceVersion == null) {
+            return true;
+        }
+        return newer(resourceVersion, checkpoint.get());
+    }
+
+    static boolean newer(String version, String than) {
+        try {
+            return Long.parseLong(version) > Long.parseLong(than);
+        } catch (NumberFormatException e) {
+            return true;
+        }
+    }
+
+    public synchronized void save(Class<?> type, String namespace, String resourceVersion) {
+        if (resourceVersion == null || resourceVersion.isEmpty() || !isNewer(type, namespace, resourceVersion)) {
+            return;
+        }
+        var kind = type.getSimpleName();
+        var checkpoint = repository.findByKindAndNamespace(kind, namespace(namespace))
+                .orElseGet(() -> new DBSyncCheckpoint(kind, namespace(namespace)));
+        checkpoint.setResourceVersion(resourceVersion);
+        checkpoint.setUpdatedAt(Instant.now().getEpochSecond());
+        repository.save(checkpoint);
+        versions.put(kind + "/" + namespace(namespace), resourceVersion);
+    }
+
+    // replays the events recorded since the checkpoint, returns false when there is no checkpoint, it is
+    // too old or the replay did not catch up, and a full list is needed. The backlog is streamed as soon
+    // as the watch opens, so the replay stops once it reaches the current list version or after an idle
+    // gap without events, counted from the open; the timeout leaves the rest to the full list
+    public <T extends HasMetadata, O extends Watchable<T> & Listable<? extends KubernetesResourceList<T>>>
+            boolean resume(Class<T> type, String namespace, O operation, Consumer<T> apply, Consumer<T> remove) {
+        var checkpoint = get(type, namespace);
+        if (checkpoint.isEmpty()) {
+            return false;
+        }
+        var target = throttle.call(type, () -> operation.list(new ListOptionsBuilder().withLimit(1L).build()))
+                .getMetadata().getResourceVersion();
+        if (!newer(target, checkpoint.get())) {
+            return true;
+        }
+        var last = new AtomicReference<>(checkpoint.get());
+        var lastEvent = new AtomicLong();
+        var caughtUp = new AtomicBoolean();
+        var gone = new AtomicBoolean();
+        var done = new CountDownLatch(1);
+        var options = new ListOptionsBuilder()
+                .withResourceVersion(checkpoint.get())
+                .withAllowWatchBookmarks(true)
+                .build();
+        var watcher = new Watcher<T>() {
+            @Override
+            public void eventReceived(Action action, T resource) {
+                switch (action) {
+                    case ADDED, MODIFIED -> apply.accept(resource);
+                    case DELETED -> remove.accept(resource);
+                    default -> {
+                    }
+                }
+                var version = resource.getMetadata().getResourceVersion();
+                last.set(version);
+                lastEvent.set(System.nanoTime());
+                if (!newer(target, version)) {
+                    caughtUp.set(true);
+                    done.countDown();
+                }
+            }
+
+            @Override
+            public void onClose(WatcherException cause) {
+                gone.set(cause.isHttpGone());
+                done.countDown();
+            }
+        };
+        try (var watch = throttle.call(type, () -> operation.watch(options, watcher))) {
+            // watch() returns once the watch is open, events that came while it opened count as well
+            lastEvent.compareAndSet(0L, System.nanoTime());
+            var deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(resumeTimeout);
+            var idle = TimeUnit.MILLISECONDS.toNanos(resumeIdle);
+            while (!done.await(resumeIdle, TimeUnit.MILLISECONDS)) {
+                var now = System.nanoTime();
+                if (now - lastEvent.get() >= idle) {
+                    caughtUp.set(true);
+                    break;
+                }
+                if (now >= deadline) {
+                    break;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (KubernetesClientException e) {
+            if (e.getCode() != 410) {
+                throw e;
+            }
+            gone.set(true);
+        }
+        if (gone.get()) {
+            log.info("{} checkpoint {} expired", type.getSimpleName(), checkpoint.get());
+            return false;
+        }
+        save(type, namespace, last.get());
+        if (!caughtUp.get()) {
+            log.info("{} replay from {} stopped at {} before catching up", type.getSimpleName(), checkpoint.get(),
+                    last.get());
+            return false;
+        }
+        log.info("resumed {} from {} to {}", type.getSimpleName(), checkpoint.get(), last.get());
+        return true;
+    }
+}
@@ -0,0 +1,78 @@
+package br.dev.optimus.gaia.service;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.env.Environment;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import br.dev.optimus.gaia.repository.ConfigMapRepository;
+import br.dev.optimus.gaia.repository.PersistentVolumeClaimRepository;
+import br.dev.optimus.gaia.repository.PersistentVolumeRepository;
+import br.dev.optimus.gaia.repository.SecretRepository;
+import br.dev.optimus.gaia.repository.StatefulSetRepository;
+
+@Service
+public class TombstonePurger {
+    private final PersistentVolumeRepository pvRepository;
+    private final PersistentVolumeClaimRepository pvcRepository;
+    private final ConfigMapRepository configMapRepository;
+    private final SecretRepository secretRepository;
+    private final StatefulSetRepository statefulSetRepository;
+    private final long retention;
+    private final int batchSize;
+    private final Logger log = LoggerFactory.getLogger(TombstonePurger.class);
+
+    public TombstonePurger(PersistentVolumeRepository pvRepository, PersistentVolumeClaimRepository pvcRepository,
+            ConfigMapRepository configMapRepository, SecretRepository secretRepository,
+            StatefulSetRepository statefulSetRepository, Environment env) {
+        this.pvRepository = pvRepository;
+        this.pvcRepository = pvcRepository;
+        this.configMapRepository = configMapRepository;
+        this.secretRepository = secretRepository;
+        this.statefulSetRepository = statefulSetRepository;
+        this.retention = env.getProperty("gaia.purge.retention", Long.class, 604800L);
+        this.batchSize = Math.max(env.getProperty("gaia.purge.batch-size", Integer.class, 500), 1);
+    }
+
+    @Scheduled(fixedDelayString = "${gaia.purge.interval:3600000}",
+            initialDelayString = "${gaia.purge.interval:3600000}")
+    public void purge() {
+        var before = Instant.now().getEpochSecond() - retention;
+        purge("persistent volumes", before, pvRepository::findTombstones, pvRepository::deleteAllByIdInBatch);
+        purge("persistent volume claims", before, pvcRepository::findTombstones,
+                pvcRepository::deleteAllByIdInBatch);
+        purge("config maps", before, configMapRepository::findTombstones,
+                configMapRepository::deleteAllByIdInBatch);
+        purge("secrets", before, secretRepository::findTombstones, secretRepository::deleteAllByIdInBatch);
+        purge("statefulsets", before, statefulSetRepository::findTombstones,
+                statefulSetRepository::deleteAllByIdInBatch);
+    }
+
+    // every batch is its own short delete by primary key, so row locks are held only for
+    // one batch and live rows are never touched
+    private void purge(String kind, long before, BiFunction<Long, Limit, List<Long>> find,
+            Consumer<List<Long>> delete) {
+        var purged = 0;
+        while (true) {
+            var ids = find.apply(before, Limit.of(batchSize));
+            if (ids.isEmpty()) {
+                break;
+            }
+            delete.accept(ids);
+            purged += ids.size();
+            if (ids.size() < batchSize) {
+                break;
+            }
+        }
+        if (purged > 0) {
+            log.info("purged {} {} deleted before {}", purged, kind, before);
+        }
+    }
+}
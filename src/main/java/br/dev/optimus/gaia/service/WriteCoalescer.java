@@ -0,0 +1,106 @@
+package br.dev.optimus.gaia.service;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.env.Environment;
+import org.springframework.core.task.TaskDecorator;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PreDestroy;
+
+@Service
+public class WriteCoalescer {
+    private final KubernetesThrottle throttle;
+    private final List<TaskDecorator> decorators;
+    private final long window;
+    private final ConcurrentHashMap<String, Pending> pending = new ConcurrentHashMap<>();
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final Logger log = LoggerFactory.getLogger(WriteCoalescer.class);
+
+    public WriteCoalescer(KubernetesThrottle throttle, List<TaskDecorator> decorators, Environment env) {
+        this.throttle = throttle;
+        this.decorators = decorators;
+        this.window = env.getProperty("gaia.coalesce.window", Long.class, 0L);
+    }
+
+    private static final class Pending {
+        private final CompletableFuture<Object> result = new CompletableFuture<>();
+        private Supplier<?> write;
+        private int merged;
+    }
+
+    // writes to the same object within the window are merged, only the last one submitted
+    // runs and every caller waiting on it gets its result
+    @SuppressWarnings("unchecked")
+    public <T> T submit(Class<?> type, String namespace, String name, Supplier<T> write) {
+        if (window <= 0) {
+            return write.get();
+        }
+        var key = type.getSimpleName() + "/" + namespace + "/" + name;
+        var entry = pending.compute(key, (k, current) -> {
+            if (current == null) {
+                current = new Pending();
+                CompletableFuture.runAsync(() -> flush(k),
+                        CompletableFuture.delayedExecutor(window, TimeUnit.MILLISECONDS, executor));
+            }
+            current.write = capture(write);
+            current.merged++;
+            return current;
+        });
+        try {
+            return (T) entry.result.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            if (e.getCause() instanceof Error cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    // the write runs on the flush thread, so the context of the caller that submitted it is captured
+    // here and restored there: its throttle lane and whatever the task decorators carry, the replica routing
+    private <T> Supplier<T> capture(Supplier<T> write) {
+        var lane = throttle.lane();
+        var result = new AtomicReference<T>();
+        Runnable task = () -> result.set(throttle.in(lane, write));
+        for (var decorator : decorators) {
+            task = decorator.decorate(task);
+        }
+        var decorated = task;
+        return () -> {
+            decorated.run();
+            return result.get();
+        };
+    }
+
+    private void flush(String key) {
+        var entry = pending.remove(key);
+        if (entry.merged > 1) {
+            log.info("coalesced {} writes to {}", entry.merged, key);
+        }
+        // every caller blocks on the result, so it has to be completed whatever the write throws
+        try {
+            entry.result.complete(entry.write.get());
+        } catch (Throwable e) {
+            entry.result.completeExceptionally(e);
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        executor.shutdown();
+    }
+}
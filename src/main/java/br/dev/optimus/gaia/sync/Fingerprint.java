@@ -0,0 +1,59 @@
+package br.dev.optimus.gaia.sync;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Map;
+import java.util.TreeMap;
+
+// 64 bit FNV-1a over the normalized values, map entries and collection items are
+// hashed in sorted order so the result does not depend on iteration order
+public final class Fingerprint {
+    private static final long OFFSET = 0xcbf29ce484222325L;
+    private static final long PRIME = 0x100000001b3L;
+    private static final byte FIELD = 0x1e;
+    private static final byte ITEM = 0x1f;
+
+    private Fingerprint() {
+    }
+
+    public static long of(Object... values) {
+        var hash = OFFSET;
+        for (var value : values) {
+            hash = hash(hash, value);
+            hash = hash(hash, FIELD);
+        }
+        return hash;
+    }
+
+    private static long hash(long hash, Object value) {
+        if (value == null) {
+            return hash;
+        }
+        if (value instanceof Map<?, ?> map) {
+            var sorted = new TreeMap<String, Object>();
+            map.forEach((k, v) -> sorted.put(String.valueOf(k), v));
+            for (var entry : sorted.entrySet()) {
+                hash = hash(hash, entry.getKey());
+                hash = hash(hash, ITEM);
+                hash = hash(hash, entry.getValue());
+                hash = hash(hash, ITEM);
+            }
+            return hash;
+        }
+        if (value instanceof Collection<?> collection) {
+            for (var item : collection.stream().map(String::valueOf).sorted().toList()) {
+                hash = hash(hash, item);
+                hash = hash(hash, ITEM);
+            }
+            return hash;
+        }
+        for (var b : String.valueOf(value).getBytes(StandardCharsets.UTF_8)) {
+            hash = hash(hash, b);
+        }
+        return hash;
+    }
+
+    private static long hash(long hash, byte b) {
+        return (hash ^ (b & 0xff)) * PRIME;
+    }
+}
@@ -0,0 +1,5 @@
+package br.dev.optimus.gaia.sync;
+
+public record SyncKey(String namespace, String name) {
+
+}
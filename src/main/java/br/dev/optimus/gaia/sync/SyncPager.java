@@ -0,0 +1,34 @@
+package br.dev.optimus.gaia.sync;
+
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import io.fabric8.kubernetes.api.model.HasMetadata;
+import io.fabric8.kubernetes.api.model.KubernetesResourceList;
+import io.fabric8.kubernetes.api.model.ListOptions;
+import io.fabric8.kubernetes.api.model.ListOptionsBuilder;
+
+public final class SyncPager {
+    private SyncPager() {
+    }
+
+    // each page is handed to the consumer before the next one is requested, the
+    // resourceVersion of the list is returned
+    public static <T extends HasMetadata, L extends KubernetesResourceList<T>> String forEach(
+            Function<ListOptions, L> list, long limit, Consumer<List<T>> page) {
+        String next = null;
+        String resourceVersion = null;
+        do {
+            var options = new ListOptionsBuilder()
+                    .withLimit(limit)
+                    .withContinue(next)
+                    .build();
+            var result = list.apply(options);
+            page.accept(result.getItems());
+            next = result.getMetadata().getContinue();
+            resourceVersion = result.getMetadata().getResourceVersion();
+        } while (next != null && !next.isEmpty());
+        return resourceVersion;
+    }
+}
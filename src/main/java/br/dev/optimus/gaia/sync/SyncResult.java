@@ -0,0 +1,4 @@
+package br.dev.optimus.gaia.sync;
+
+public record SyncResult(int written, int skipped, int deleted) {
+}
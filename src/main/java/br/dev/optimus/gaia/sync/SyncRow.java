@@ -0,0 +1,7 @@
+package br.dev.optimus.gaia.sync;
+
+public interface SyncRow {
+    Long getId();
+
+    String getName();
+}
@@ -0,0 +1,31 @@
+package br.dev.optimus.gaia.sync;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.function.ToIntBiFunction;
+
+public final class SyncTombstones {
+    private SyncTombstones() {
+    }
+
+    // soft deletes the live rows missing from the listed names, the ids are chunked
+    // by batch size so a single UPDATE never carries an unbounded IN list
+    public static int sweep(List<SyncRow> live, Set<String> listed, int batchSize,
+            ToIntBiFunction<List<Long>, Long> delete) {
+        var missing = new ArrayList<Long>();
+        for (var row : live) {
+            if (!listed.contains(row.getName())) {
+                missing.add(row.getId());
+            }
+        }
+        var now = Instant.now().getEpochSecond();
+        var size = batchSize > 0 ? batchSize : 1;
+        var deleted = 0;
+        for (int i = 0; i < missing.size(); i += size) {
+            deleted += delete.applyAsInt(missing.subList(i, Math.min(i + size, missing.size())), now);
+        }
+        return deleted;
+    }
+}
@@ -0,0 +1,48 @@
+package br.dev.optimus.gaia.sync;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public class SyncWriter<T> {
+    private final JpaRepository<T, ?> repository;
+    private final int batchSize;
+    private final List<T> batch;
+    private int written;
+    private int skipped;
+
+    public SyncWriter(JpaRepository<T, ?> repository, int batchSize) {
+        this.repository = repository;
+        this.batchSize = batchSize > 0 ? batchSize : 1;
+        this.batch = new ArrayList<>(this.batchSize);
+    }
+
+    public void add(T data) {
+        batch.add(data);
+        if (batch.size() >= batchSize) {
+            flush();
+        }
+    }
+
+    public void flush() {
+        if (batch.isEmpty()) {
+            return;
+        }
+        repository.saveAll(batch);
+        written += batch.size();
+        batch.clear();
+    }
+
+    public void skip() {
+        skipped++;
+    }
+
+    public int getWritten() {
+        return written;
+    }
+
+    public SyncResult result(int deleted) {
+        return new SyncResult(written, skipped, deleted);
+    }
+}
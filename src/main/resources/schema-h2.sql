@@ -0,0 +1,18 @@
+-- h2 has no partial indexes, live rows share a live_key of 0 and tombstones use their id, so the
+-- unique index on (namespace, name, live_key) keeps names unique among live rows like on postgresql
+alter table gaia.configmaps add column if not exists live_key bigint
+    generated always as (case when deleted_at is null then 0 else id end);
+create unique index if not exists configmaps_live_name_idx on gaia.configmaps (namespace, name, live_key);
+alter table gaia.secrets add column if not exists live_key bigint
+    generated always as (case when deleted_at is null then 0 else id end);
+create unique index if not exists secrets_live_name_idx on gaia.secrets (namespace, name, live_key);
+alter table gaia.persistent_volumes add column if not exists live_key bigint
+    generated always as (case when deleted_at is null then 0 else id end);
+create unique index if not exists persistent_volumes_live_pv_name_idx on gaia.persistent_volumes (name, live_key);
+alter table gaia.persistent_volume_claims add column if not exists live_key bigint
+    generated always as (case when deleted_at is null then 0 else id end);
+create unique index if not exists persistent_volume_claims_live_name_idx
+    on gaia.persistent_volume_claims (namespace, name, live_key);
+alter table gaia.statefulsets add column if not exists live_key bigint
+    generated always as (case when deleted_at is null then 0 else id end);
+create unique index if not exists statefulsets_live_name_idx on gaia.statefulsets (namespace, name, live_key);
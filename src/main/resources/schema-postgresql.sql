@@ -0,0 +1,38 @@
+-- names are unique among live rows only, so a name can be reused after a soft delete
+create unique index if not exists configmaps_live_name_idx on gaia.configmaps (namespace, name)
+    where deleted_at is null;
+create unique index if not exists secrets_live_name_idx on gaia.secrets (namespace, name)
+    where deleted_at is null;
+-- persistent volumes are cluster scoped, their names are unique whatever namespace a row was created with
+create unique index if not exists persistent_volumes_live_pv_name_idx on gaia.persistent_volumes (name)
+    where deleted_at is null;
+create unique index if not exists persistent_volume_claims_live_name_idx
+    on gaia.persistent_volume_claims (namespace, name) where deleted_at is null;
+create unique index if not exists statefulsets_live_name_idx on gaia.statefulsets (namespace, name)
+    where deleted_at is null;
+
+-- keyset pages of live rows
+create index if not exists configmaps_live_id_idx on gaia.configmaps (id) where deleted_at is null;
+create index if not exists secrets_live_id_idx on gaia.secrets (id) where deleted_at is null;
+create index if not exists persistent_volumes_live_id_idx on gaia.persistent_volumes (id) where deleted_at is null;
+create index if not exists persistent_volume_claims_live_id_idx on gaia.persistent_volume_claims (id)
+    where deleted_at is null;
+create index if not exists statefulsets_live_id_idx on gaia.statefulsets (id) where deleted_at is null;
+
+-- tombstones scanned by the purge job
+create index if not exists configmaps_deleted_at_idx on gaia.configmaps (deleted_at) where deleted_at is not null;
+create index if not exists secrets_deleted_at_idx on gaia.secrets (deleted_at) where deleted_at is not null;
+create index if not exists persistent_volumes_deleted_at_idx on gaia.persistent_volumes (deleted_at)
+    where deleted_at is not null;
+create index if not exists persistent_volume_claims_deleted_at_idx on gaia.persistent_volume_claims (deleted_at)
+    where deleted_at is not null;
+create index if not exists statefulsets_deleted_at_idx on gaia.statefulsets (deleted_at)
+    where deleted_at is not null;
+
+-- jsonb_path_ops indexes answer the @> containment queries in StatefulSetRepository
+create index if not exists statefulsets_containers_idx on gaia.statefulsets using gin (containers jsonb_path_ops)
+    where deleted_at is null;
+create index if not exists statefulsets_init_containers_idx on gaia.statefulsets
+    using gin (init_containers jsonb_path_ops) where deleted_at is null;
+create index if not exists statefulsets_volumes_idx on gaia.statefulsets using gin (volumes jsonb_path_ops)
+    where deleted_at is null;
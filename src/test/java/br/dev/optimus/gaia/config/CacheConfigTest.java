@@ -0,0 +1,27 @@
+package br.dev.optimus.gaia.config;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.hibernate.cache.spi.RegionFactory;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class CacheConfigTest {
+    @Test
+    void entriesExpireButTimestampsDoNot() throws InterruptedException {
+        var env = new MockEnvironment().withProperty("gaia.cache.expire-after-write", "50");
+        try (var manager = new CacheConfig().entityCacheManager(env, new SimpleMeterRegistry())) {
+            var entities = manager.getCache("gaia.configmaps");
+            var timestamps = manager.getCache(RegionFactory.DEFAULT_UPDATE_TIMESTAMPS_REGION_UNQUALIFIED_NAME);
+            entities.put("row", "cached");
+            timestamps.put("gaia.configmaps", 1L);
+
+            Thread.sleep(150);
+
+            assertThat(entities.get("row")).isNull();
+            assertThat(timestamps.get("gaia.configmaps")).isEqualTo(1L);
+        }
+    }
+}
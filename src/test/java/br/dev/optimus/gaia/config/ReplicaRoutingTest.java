@@ -0,0 +1,148 @@
+package br.dev.optimus.gaia.config;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.hibernate.CacheMode;
+import org.hibernate.Session;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import jakarta.persistence.EntityManager;
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+class ReplicaRoutingTest {
+    private EmbeddedDatabase primary;
+    private EmbeddedDatabase replica;
+    private JdbcTemplate jdbc;
+
+    @BeforeEach
+    void setUp() {
+        primary = database("primary");
+        replica = database("replica");
+        var routing = new ReplicaRouting();
+        routing.setTargetDataSources(Map.of(ReplicaRouting.PRIMARY, primary, ReplicaRouting.REPLICA, replica));
+        routing.setDefaultTargetDataSource(primary);
+        routing.afterPropertiesSet();
+        jdbc = new JdbcTemplate(routing);
+    }
+
+    @AfterEach
+    void tearDown() {
+        ReplicaRouting.end();
+        primary.shutdown();
+        replica.shutdown();
+    }
+
+    @Test
+    void readsGoToTheReplicaOnlyInsideTheLane() {
+        assertThat(source()).isEqualTo("primary");
+
+        ReplicaRouting.begin();
+        assertThat(source()).isEqualTo("replica");
+
+        ReplicaRouting.end();
+        assertThat(source()).isEqualTo("primary");
+    }
+
+    @Test
+    void getRequestsReadFromTheReplica() throws Exception {
+        var seen = new AtomicReference<String>();
+        var response = new MockHttpServletResponse();
+
+        new ReplicaFilter(5).doFilter(new MockHttpServletRequest("GET", "/api/configmaps"), response, chain(seen));
+
+        assertThat(seen.get()).isEqualTo("replica");
+        assertThat(response.getCookie(ReplicaFilter.COOKIE)).isNull();
+        assertThat(ReplicaRouting.reading()).isFalse();
+    }
+
+    @Test
+    void writesStayOnThePrimaryAndPinTheClient() throws Exception {
+        var seen = new AtomicReference<String>();
+        var response = new MockHttpServletResponse();
+
+        new ReplicaFilter(5).doFilter(new MockHttpServletRequest("POST", "/api/configmaps"), response,
+                chain(seen));
+
+        assertThat(seen.get()).isEqualTo("primary");
+        assertThat(response.getCookie(ReplicaFilter.COOKIE)).isNotNull();
+        assertThat(response.getCookie(ReplicaFilter.COOKIE).getMaxAge()).isEqualTo(5);
+    }
+
+    @Test
+    void pinnedReadsStayOnThePrimary() throws Exception {
+        var seen = new AtomicReference<String>();
+        var request = new MockHttpServletRequest("GET", "/api/configmaps");
+        request.setCookies(new Cookie(ReplicaFilter.COOKIE, "1"));
+
+        new ReplicaFilter(5).doFilter(request, new MockHttpServletResponse(), chain(seen));
+
+        assertThat(seen.get()).isEqualTo("primary");
+    }
+
+    @Test
+    void propagatedTasksKeepTheLane() throws Exception {
+        var seen = new AtomicReference<String>();
+        ReplicaRouting.begin();
+        var task = ReplicaRouting.propagate(() -> seen.set(source()));
+        ReplicaRouting.end();
+
+        var thread = new Thread(task);
+        thread.start();
+        thread.join();
+
+        assertThat(seen.get()).isEqualTo("replica");
+    }
+
+    @Test
+    void replicaSessionsDoNotFillTheCache() {
+        var entityManager = mock(EntityManager.class);
+        var session = mock(Session.class);
+        when(entityManager.unwrap(Session.class)).thenReturn(session);
+
+        ReplicaRouting.initialize(entityManager);
+        verify(session, never()).setCacheMode(CacheMode.GET);
+
+        ReplicaRouting.begin();
+        ReplicaRouting.initialize(entityManager);
+        verify(session).setCacheMode(CacheMode.GET);
+    }
+
+    private MockFilterChain chain(AtomicReference<String> seen) {
+        return new MockFilterChain(new HttpServlet() {
+            @Override
+            protected void service(HttpServletRequest request, HttpServletResponse response) {
+                seen.set(source());
+            }
+        });
+    }
+
+    private String source() {
+        return jdbc.queryForObject("select name from source", String.class);
+    }
+
+    private static EmbeddedDatabase database(String name) {
+        var database = new EmbeddedDatabaseBuilder().setType(EmbeddedDatabaseType.H2).setName(name).build();
+        new JdbcTemplate(database).execute("create table source (name varchar(16))");
+        new JdbcTemplate(database).update("insert into source values (?)", name);
+        return database;
+    }
+}
@@ -0,0 +1,87 @@
+package br.dev.optimus.gaia.config;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntConsumer;
+
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.mock.env.MockEnvironment;
+
+import io.fabric8.kubernetes.api.model.ConfigMap;
+import io.fabric8.kubernetes.api.model.ConfigMapBuilder;
+import io.fabric8.kubernetes.client.Config;
+import io.fabric8.kubernetes.client.ConfigBuilder;
+import io.fabric8.kubernetes.client.KubernetesClientBuilder;
+import io.fabric8.kubernetes.client.server.mock.EnableKubernetesMockClient;
+import io.fabric8.kubernetes.client.server.mock.KubernetesMockServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+// run with: ./mvnw test -Dtest=TransportBenchmark -Dbenchmark=true
+@EnableKubernetesMockClient(crud = true)
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class TransportBenchmark {
+    private static final Logger log = LoggerFactory.getLogger(TransportBenchmark.class);
+    private static final int OBJECTS = 200;
+    private static final int CALLS = 2000;
+    private static final int CONCURRENCY = 32;
+
+    static KubernetesMockServer server;
+
+    @ParameterizedTest
+    @ValueSource(strings = { "jdk", "okhttp", "vertx" })
+    void transports(String transport) {
+        var env = new MockEnvironment().withProperty("gaia.kubernetes.http-client", transport);
+        var config = KubernetesConfig.config(env, new ConfigBuilder(Config.empty())
+                .withMasterUrl(server.url("/"))
+                .withTrustCerts(true)
+                .withNamespace(transport)
+                .build());
+        try (var client = new KubernetesClientBuilder()
+                .withConfig(config)
+                .withHttpClientFactory(KubernetesConfig.factory(env, new SimpleMeterRegistry()))
+                .build()) {
+            run(transport, "apply", i -> client.resource(configMap(transport, i % OBJECTS, i)).serverSideApply());
+            run(transport, "get", i -> client.configMaps().withName("cm-" + i % OBJECTS).get());
+            run(transport, "list", i -> client.configMaps().list());
+        }
+    }
+
+    private static ConfigMap configMap(String namespace, int name, int value) {
+        return new ConfigMapBuilder()
+                .withNewMetadata()
+                .withNamespace(namespace)
+                .withName("cm-" + name)
+                .endMetadata()
+                .withData(Map.of("key", "value-" + value))
+                .build();
+    }
+
+    private static void run(String transport, String operation, IntConsumer call) {
+        var failed = new AtomicInteger();
+        var start = System.nanoTime();
+        try (var executor = Executors.newFixedThreadPool(CONCURRENCY)) {
+            for (int i = 0; i < CALLS; i++) {
+                var index = i;
+                executor.execute(() -> {
+                    try {
+                        call.accept(index);
+                    } catch (RuntimeException e) {
+                        failed.incrementAndGet();
+                    }
+                });
+            }
+        }
+        var elapsed = System.nanoTime() - start;
+        log.info("{} {} calls={} failed={} time={}ms throughput={}/s", transport, operation, CALLS, failed.get(),
+                elapsed / 1_000_000, CALLS * 1_000_000_000L / elapsed);
+        // a transport that drops calls would otherwise look faster than one that serves them
+        assertThat(failed).hasValue(0);
+    }
+}
@@ -0,0 +1,42 @@
+package br.dev.optimus.gaia.controller;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import org.junit.jupiter.api.Test;
+
+import br.dev.optimus.gaia.exception.PreconditionFailedException;
+
+class ETagsTest {
+    @Test
+    void quotesTheVersion() {
+        assertThat(ETags.of(7)).isEqualTo("\"7\"");
+    }
+
+    @Test
+    void readsTheVersionBackFromIfMatch() {
+        assertThat(ETags.version(ETags.of(7))).isEqualTo(7L);
+        assertThat(ETags.version(" \"42\" ")).isEqualTo(42L);
+    }
+
+    @Test
+    void asksForNoVersionWhenAbsentOrAny() {
+        assertThat(ETags.version(null)).isNull();
+        assertThat(ETags.version(" ")).isNull();
+        assertThat(ETags.version("*")).isNull();
+    }
+
+    @Test
+    void rejectsWeakUnquotedAndListedTags() {
+        for (var header : new String[] { "W/\"7\"", "7", "\"", "\"7\", \"8\"" }) {
+            assertThatThrownBy(() -> ETags.version(header)).isInstanceOf(PreconditionFailedException.class);
+        }
+    }
+
+    @Test
+    void rejectsTagsThatAreNotVersions() {
+        assertThatThrownBy(() -> ETags.version("\"abc\""))
+                .isInstanceOf(PreconditionFailedException.class)
+                .hasMessage("If-Match does not match any version");
+    }
+}
@@ -0,0 +1,20 @@
+package br.dev.optimus.gaia.model;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+class DBOperationTest {
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    @Test
+    void payloadIsNotSerialized() {
+        var payload = mapper.createObjectNode().put("name", "cm");
+        var json = mapper.valueToTree(new DBOperation("configmap", "create", null, payload));
+
+        assertThat(json.has("payload")).isFalse();
+        assertThat(json.get("kind").asText()).isEqualTo("configmap");
+    }
+}
@@ -0,0 +1,36 @@
+package br.dev.optimus.gaia.repository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+
+import br.dev.optimus.gaia.model.DBConfigMap;
+import br.dev.optimus.gaia.sync.SyncRow;
+
+@DataJpaTest(properties = { "spring.sql.init.platform=h2",
+        "spring.jpa.properties.hibernate.hbm2ddl.create_namespaces=true" })
+class ConfigMapRepositoryTest {
+    @Autowired
+    private ConfigMapRepository repository;
+
+    private DBConfigMap save(String name, long updatedAt, Long deletedAt) {
+        var row = DBConfigMap.builder().namespace("sweep").name(name).data(Map.of("key", "value")).build();
+        row.setCreatedAt(updatedAt);
+        row.setUpdatedAt(updatedAt);
+        row.setDeletedAt(deletedAt);
+        return repository.save(row);
+    }
+
+    @Test
+    void liveRowsExcludeThoseWrittenSinceTheListStarted() {
+        save("before", 100, null);
+        save("during", 150, null);
+        save("deleted", 100, 120L);
+
+        assertThat(repository.findLive("sweep", 150L)).extracting(SyncRow::getName).containsExactly("before");
+    }
+}
@@ -0,0 +1,112 @@
+package br.dev.optimus.gaia.response;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.stream.LongStream;
+
+import org.hibernate.Session;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.orm.jpa.EntityManagerHolder;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import br.dev.optimus.gaia.exception.BadRequestException;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+
+class ListStreamerTest {
+    private final ObjectMapper mapper = new ObjectMapper();
+    private EntityManagerFactory entityManagerFactory;
+    private EntityManager entityManager;
+    private ListStreamer streamer;
+
+    record Row(long id) {
+    }
+
+    @BeforeEach
+    void setUp() {
+        entityManagerFactory = mock(EntityManagerFactory.class);
+        entityManager = mock(EntityManager.class);
+        when(entityManagerFactory.createEntityManager()).thenReturn(entityManager);
+        when(entityManager.unwrap(Session.class)).thenReturn(mock(Session.class));
+        streamer = new ListStreamer(mapper, entityManagerFactory,
+                new MockEnvironment().withProperty("gaia.api.page-size", "2"));
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.hasResource(entityManagerFactory)) {
+            TransactionSynchronizationManager.unbindResource(entityManagerFactory);
+        }
+    }
+
+    private static List<Row> rows(Long after, int limit, long total) {
+        return LongStream.rangeClosed(after + 1, total).limit(limit).mapToObj(Row::new).toList();
+    }
+
+    private JsonNode write(long total, Long after, Integer limit) throws IOException {
+        var out = new ByteArrayOutputStream();
+        streamer.stream((cursor, page) -> {
+            assertThat(TransactionSynchronizationManager.getResource(entityManagerFactory))
+                    .isInstanceOfSatisfying(EntityManagerHolder.class,
+                            holder -> assertThat(holder.getEntityManager()).isSameAs(entityManager));
+            return rows(cursor, page.max(), total);
+        }, Row::id, after, limit).writeTo(out);
+        return mapper.readTree(out.toByteArray());
+    }
+
+    @Test
+    void returnsTheCursorOfTheNextPageWhenTheLimitIsReached() throws IOException {
+        var json = write(5, null, 3);
+
+        assertThat(json.get("items")).extracting(item -> item.get("id").asLong()).containsExactly(1L, 2L, 3L);
+        assertThat(json.get("next").asLong()).isEqualTo(3);
+    }
+
+    @Test
+    void resumesAfterTheCursorAndEndsWithoutOne() throws IOException {
+        var json = write(5, 3L, null);
+
+        assertThat(json.get("items")).extracting(item -> item.get("id").asLong()).containsExactly(4L, 5L);
+        assertThat(json.get("next").isNull()).isTrue();
+    }
+
+    @Test
+    void writesAPlainArrayWhenNotPaged() throws IOException {
+        var json = write(5, null, null);
+
+        assertThat(json.isArray()).isTrue();
+        assertThat(json).extracting(item -> item.get("id").asLong()).containsExactly(1L, 2L, 3L, 4L, 5L);
+    }
+
+    @Test
+    void readsThroughItsOwnEntityManagerAndRestoresTheBoundOne() throws IOException {
+        var bound = new EntityManagerHolder(mock(EntityManager.class));
+        TransactionSynchronizationManager.bindResource(entityManagerFactory, bound);
+
+        write(3, null, null);
+
+        verify(entityManager, times(2)).clear();
+        verify(entityManager).close();
+        assertThat(TransactionSynchronizationManager.getResource(entityManagerFactory)).isSameAs(bound);
+    }
+
+    @Test
+    void rejectsNonPositiveLimits() {
+        assertThatThrownBy(() -> streamer.stream((after, limit) -> List.of(), Row::id, null, 0))
+                .isInstanceOf(BadRequestException.class);
+    }
+}
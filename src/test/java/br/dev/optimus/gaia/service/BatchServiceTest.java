@@ -0,0 +1,141 @@
+package br.dev.optimus.gaia.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import br.dev.optimus.gaia.model.DBPersistentVolume;
+import br.dev.optimus.gaia.model.DBPersistentVolumeClaim;
+import br.dev.optimus.gaia.request.BatchRequest;
+import br.dev.optimus.gaia.request.PersistentVolumeClaimCreateRequest;
+import br.dev.optimus.gaia.request.PersistentVolumeCreateRequest;
+import br.dev.optimus.gaia.response.BatchResult;
+
+class BatchServiceTest {
+    private final ObjectMapper mapper = new ObjectMapper();
+    private PersistentVolumeService pvService;
+    private PersistentVolumeClaimService pvcService;
+    private BatchService service;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        pvService = mock(PersistentVolumeService.class);
+        pvcService = mock(PersistentVolumeClaimService.class);
+        var informers = mock(InformerService.class);
+        when(informers.write(any(Class.class), anyCollection(), any()))
+                .thenAnswer(invocation -> invocation.<Supplier<?>>getArgument(2).get());
+        when(pvService.prepare(any(PersistentVolumeCreateRequest.class)))
+                .thenAnswer(invocation -> pv(invocation.<PersistentVolumeCreateRequest>getArgument(0).name()));
+        when(pvcService.prepare(any(PersistentVolumeClaimCreateRequest.class)))
+                .thenAnswer(invocation -> pvc(invocation.<PersistentVolumeClaimCreateRequest>getArgument(0).name()));
+        when(pvService.merge(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+        when(pvcService.merge(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+        when(pvService.saveAll(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+        when(pvcService.saveAll(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+        service = new BatchService(pvService, pvcService, mock(ConfigMapService.class), mock(SecretService.class),
+                mock(StatefulSetService.class), informers, mapper, new MockEnvironment());
+    }
+
+    @Test
+    void missingKindIsABadRequest() {
+        var results = service.apply(List.of(new BatchRequest.Item(null, spec("a")), item("pv", "a")));
+
+        assertThat(results.get(0).status()).isEqualTo(400);
+        assertThat(results.get(0).field()).isEqualTo("kind");
+        assertThat(results.get(1).status()).isEqualTo(200);
+    }
+
+    @Test
+    void missingSpecIsABadRequest() {
+        var results = service.apply(List.of(new BatchRequest.Item("pv", null), item("pv", "a")));
+
+        assertThat(results.get(0).status()).isEqualTo(400);
+        assertThat(results.get(0).field()).isEqualTo("spec");
+        assertThat(results.get(1).status()).isEqualTo(200);
+    }
+
+    @Test
+    void storedRowsAreLookedUpOncePerKind() {
+        service.apply(List.of(item("pv", "a"), item("pv", "b")));
+
+        verify(pvService).merge(argThat(data -> data.size() == 2));
+    }
+
+    @Test
+    void volumesAreAppliedBeforeClaims() {
+        var results = service.apply(List.of(item("pvc", "claim"), item("pv", "volume")));
+
+        var order = inOrder(pvService, pvcService);
+        order.verify(pvService).push(any());
+        order.verify(pvcService).push(any());
+        assertThat(results).extracting(BatchResult::status).containsExactly(200, 200);
+    }
+
+    @Test
+    void dependentsOfAFailedStageAreNotApplied() {
+        doThrow(new IllegalStateException("cluster unavailable")).when(pvService).push(any());
+
+        var results = service.apply(List.of(item("pv", "volume"), item("pvc", "claim")));
+
+        assertThat(results.get(0).status()).isEqualTo(500);
+        assertThat(results.get(1).status()).isEqualTo(424);
+        verify(pvcService, never()).push(any());
+        verify(pvcService, never()).saveAll(anyList());
+    }
+
+    @Test
+    void aFailedBatchSaveIsRetriedPerItem() {
+        when(pvService.saveAll(anyList())).thenAnswer(invocation -> {
+            List<DBPersistentVolume> data = invocation.getArgument(0);
+            if (data.size() > 1 || data.get(0).getName().equals("broken")) {
+                data.forEach(pv -> pv.setId(99));
+                throw new IllegalStateException("constraint violation");
+            }
+            assertThat(data.get(0).getId()).isZero();
+            return new ArrayList<>(data);
+        });
+
+        var results = service.apply(List.of(item("pv", "good"), item("pv", "broken")));
+
+        assertThat(results.get(0).status()).isEqualTo(200);
+        assertThat(results.get(1).status()).isEqualTo(500);
+        assertThat(results.get(1).error()).startsWith("applied to the cluster but not saved");
+        verify(pvService).saveAll(argThat(data -> data.size() == 1 && data.get(0).getName().equals("good")));
+    }
+
+    private BatchRequest.Item item(String kind, String name) {
+        return new BatchRequest.Item(kind, spec(name));
+    }
+
+    private JsonNode spec(String name) {
+        return mapper.createObjectNode().put("name", name);
+    }
+
+    private static DBPersistentVolume pv(String name) {
+        return DBPersistentVolume.builder().name(name).build();
+    }
+
+    private static DBPersistentVolumeClaim pvc(String name) {
+        return DBPersistentVolumeClaim.builder().namespace("default").name(name).build();
+    }
+}
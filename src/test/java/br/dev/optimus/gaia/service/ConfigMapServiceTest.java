@@ -0,0 +1,127 @@
+package br.dev.optimus.gaia.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import br.dev.optimus.gaia.exception.PreconditionFailedException;
+import br.dev.optimus.gaia.model.DBConfigMap;
+import br.dev.optimus.gaia.repository.ConfigMapRepository;
+import br.dev.optimus.gaia.repository.OutboxRepository;
+import br.dev.optimus.gaia.repository.SyncCheckpointRepository;
+import br.dev.optimus.gaia.request.ConfigMapRequest;
+import io.fabric8.kubernetes.api.model.ConfigMapBuilder;
+import io.fabric8.kubernetes.client.KubernetesClient;
+import io.fabric8.kubernetes.client.server.mock.EnableKubernetesMockClient;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManagerFactory;
+
+@EnableKubernetesMockClient(crud = true)
+class ConfigMapServiceTest {
+    static KubernetesClient client;
+
+    private ConfigMapRepository repository;
+    private ConfigMapService service;
+
+    @BeforeEach
+    void setUp() {
+        repository = mock(ConfigMapRepository.class);
+        when(repository.save(any())).thenAnswer(invocation -> invocation.getArgument(0));
+        var env = new MockEnvironment().withProperty("gaia.kubernetes.server-side-apply", "false");
+        var throttle = new KubernetesThrottle(new SimpleMeterRegistry(), env);
+        var applier = new ResourceApplier(client, mock(OutboxRepository.class), mock(PlatformTransactionManager.class),
+                throttle, env);
+        service = new ConfigMapService(client, repository, applier, new InformerService(client, env),
+                new SyncCheckpointService(mock(SyncCheckpointRepository.class), throttle, env),
+                new EntityCache(mock(EntityManagerFactory.class)), new WriteCoalescer(throttle, List.of(), env),
+                throttle, env);
+    }
+
+    // creates the object in the cluster and returns its row at the given version
+    private DBConfigMap stored(long id, String name, long version) {
+        var created = client.configMaps().inNamespace("test").resource(new ConfigMapBuilder()
+                .withNewMetadata().withNamespace("test").withName(name).endMetadata()
+                .withData(Map.of("key", "old"))
+                .build()).create();
+        var row = DBConfigMap.builder().namespace("test").name(name).data(Map.of("key", "old")).build();
+        row.setId(id);
+        row.setVersion(version);
+        row.setResourceVersion(created.getMetadata().getResourceVersion());
+        when(repository.findById(id)).thenReturn(Optional.of(row));
+        return row;
+    }
+
+    private String data(String name) {
+        return client.configMaps().inNamespace("test").withName(name).get().getData().get("key");
+    }
+
+    @Test
+    void writesWhenTheLockedVersionMatches() {
+        stored(1L, "current", 3);
+        when(repository.lockVersion(1L)).thenReturn(Optional.of(3L));
+
+        var saved = service.update(1L, new ConfigMapRequest.Update(Map.of("key", "new")), 3L);
+
+        assertThat(saved.getData()).containsEntry("key", "new");
+        assertThat(data("current")).isEqualTo("new");
+    }
+
+    @Test
+    void aVersionChangedBeforeTheLockNeverReachesTheCluster() {
+        stored(2L, "raced", 3);
+        when(repository.lockVersion(2L)).thenReturn(Optional.of(4L));
+
+        assertThatThrownBy(() -> service.update(2L, new ConfigMapRequest.Update(Map.of("key", "new")), 3L))
+                .isInstanceOf(PreconditionFailedException.class);
+        verify(repository, never()).save(any());
+        assertThat(data("raced")).isEqualTo("old");
+    }
+
+    @Test
+    void mergesABatchWithOneLookupPerNamespace() {
+        var row = DBConfigMap.builder().namespace("a").name("existing").data(Map.of("key", "old")).build();
+        row.setId(7L);
+        when(repository.findByNamespaceAndNameInAndDeletedAtIsNull("a", Set.of("existing", "new")))
+                .thenReturn(List.of(row));
+        var prepared = List.of(
+                DBConfigMap.builder().namespace("a").name("existing").data(Map.of("key", "new")).build(),
+                DBConfigMap.builder().namespace("a").name("new").data(Map.of("key", "new")).build(),
+                DBConfigMap.builder().namespace("b").name("other").data(Map.of("key", "new")).build());
+
+        var merged = service.merge(prepared);
+
+        assertThat(merged).extracting(DBConfigMap::getId).containsExactly(7L, null, null);
+        assertThat(merged.get(0).getData()).containsEntry("key", "new");
+        verify(repository, times(2)).findByNamespaceAndNameInAndDeletedAtIsNull(anyString(), anyCollection());
+    }
+
+    @Test
+    void aClusterChangeSinceTheStoredResourceVersionIsNotOverwritten() {
+        var row = stored(3L, "changed", 3);
+        when(repository.lockVersion(3L)).thenReturn(Optional.of(3L));
+        client.configMaps().inNamespace("test").withName("changed")
+                .edit(cm -> new ConfigMapBuilder(cm).withData(Map.of("key", "kubectl")).build());
+
+        assertThatThrownBy(() -> service.update(3L, new ConfigMapRequest.Update(Map.of("key", "new")), 3L))
+                .isInstanceOf(PreconditionFailedException.class);
+        verify(repository, never()).save(row);
+        assertThat(data("changed")).isEqualTo("kubectl");
+    }
+}
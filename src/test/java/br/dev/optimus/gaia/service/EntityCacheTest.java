@@ -0,0 +1,48 @@
+package br.dev.optimus.gaia.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Optional;
+import java.util.function.Function;
+
+import org.hibernate.Cache;
+import org.hibernate.SessionFactory;
+import org.hibernate.boot.spi.SessionFactoryOptions;
+import org.junit.jupiter.api.Test;
+
+import br.dev.optimus.gaia.model.DBConfigMap;
+import jakarta.persistence.EntityManagerFactory;
+
+class EntityCacheTest {
+    @Test
+    @SuppressWarnings("unchecked")
+    void reloadEvictsOnlyTheRowBeforeReadingIt() {
+        var sessionFactory = mock(SessionFactory.class);
+        var options = mock(SessionFactoryOptions.class);
+        var cache = mock(Cache.class);
+        var entityManagerFactory = mock(EntityManagerFactory.class);
+        when(entityManagerFactory.unwrap(SessionFactory.class)).thenReturn(sessionFactory);
+        when(sessionFactory.getSessionFactoryOptions()).thenReturn(options);
+        when(options.isSecondLevelCacheEnabled()).thenReturn(true);
+        when(sessionFactory.getCache()).thenReturn(cache);
+        var row = new DBConfigMap();
+        Function<Long, Optional<DBConfigMap>> find = mock(Function.class);
+        when(find.apply(7L)).thenReturn(Optional.of(row));
+
+        var reloaded = new EntityCache(entityManagerFactory).reload(DBConfigMap.class, 7L, find);
+
+        assertThat(reloaded).containsSame(row);
+        var order = inOrder(cache, find);
+        order.verify(cache).evictEntityData(DBConfigMap.class, 7L);
+        order.verify(find).apply(7L);
+        verify(cache, never()).evictQueryRegion(anyString());
+        verify(cache, never()).evictEntityData(any(Class.class));
+    }
+}
@@ -0,0 +1,115 @@
+package br.dev.optimus.gaia.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.springframework.mock.env.MockEnvironment;
+
+import io.fabric8.kubernetes.api.model.ConfigMap;
+import io.fabric8.kubernetes.api.model.Secret;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class KubernetesThrottleTest {
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    private KubernetesThrottle throttle(MockEnvironment env) {
+        return new KubernetesThrottle(registry, env);
+    }
+
+    private long elapsed(Runnable work) {
+        var start = System.nanoTime();
+        work.run();
+        return Duration.ofNanos(System.nanoTime() - start).toMillis();
+    }
+
+    @Test
+    void recordsCallsPerKindAndLane() {
+        var throttle = throttle(new MockEnvironment());
+
+        assertThat(throttle.call(ConfigMap.class, () -> "interactive")).isEqualTo("interactive");
+        throttle.sync(() -> throttle.call(ConfigMap.class, () -> "sync"));
+        throttle.run(Secret.class, () -> {
+        });
+
+        assertThat(registry.get("gaia.kubernetes.requests").tags("kind", "ConfigMap", "lane", "interactive")
+                .timer().count()).isEqualTo(1);
+        assertThat(registry.get("gaia.kubernetes.requests").tags("kind", "ConfigMap", "lane", "sync")
+                .timer().count()).isEqualTo(1);
+        assertThat(registry.get("gaia.kubernetes.requests").tags("kind", "Secret", "lane", "interactive")
+                .timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    void waitsForTokensOnceTheBurstIsSpent() {
+        var throttle = throttle(new MockEnvironment()
+                .withProperty("gaia.kubernetes.qps", "10")
+                .withProperty("gaia.kubernetes.burst", "1"));
+
+        // the first call takes the burst, the next two wait 100ms each
+        var elapsed = elapsed(() -> {
+            for (int i = 0; i < 3; i++) {
+                throttle.run(ConfigMap.class, () -> {
+                });
+            }
+        });
+
+        assertThat(elapsed).isGreaterThanOrEqualTo(180);
+    }
+
+    @Test
+    void limitsOnlyTheKindThatHasItsOwnRate() {
+        var throttle = throttle(new MockEnvironment()
+                .withProperty("gaia.kubernetes.qps", "0")
+                .withProperty("gaia.kubernetes.kinds.configmap.qps", "5")
+                .withProperty("gaia.kubernetes.kinds.configmap.burst", "1"));
+
+        var secrets = elapsed(() -> {
+            for (int i = 0; i < 20; i++) {
+                throttle.run(Secret.class, () -> {
+                });
+            }
+        });
+        var configMaps = elapsed(() -> {
+            for (int i = 0; i < 2; i++) {
+                throttle.run(ConfigMap.class, () -> {
+                });
+            }
+        });
+
+        assertThat(secrets).isLessThan(100);
+        assertThat(configMaps).isGreaterThanOrEqualTo(180);
+    }
+
+    @Test
+    @Timeout(5)
+    void aFullSyncLaneDoesNotBlockInteractiveCalls() throws Exception {
+        var throttle = throttle(new MockEnvironment().withProperty("gaia.kubernetes.bulkhead.sync", "1"));
+        var running = new CountDownLatch(1);
+        var release = new CountDownLatch(1);
+        var sync = CompletableFuture.runAsync(() -> throttle.sync(() -> throttle.call(ConfigMap.class, () -> {
+            running.countDown();
+            try {
+                return release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        })));
+        running.await();
+
+        assertThat(throttle.call(ConfigMap.class, () -> "served")).isEqualTo("served");
+        assertThat(registry.get("gaia.kubernetes.requests.inflight").tag("lane", "sync").gauge().value())
+                .isEqualTo(1);
+
+        release.countDown();
+        sync.get();
+        assertThat(registry.get("gaia.kubernetes.requests.inflight").tag("lane", "sync").gauge().value())
+                .isZero();
+    }
+}
@@ -0,0 +1,52 @@
+package br.dev.optimus.gaia.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+class MergePatchTest {
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    private JsonNode json(String value) throws JsonProcessingException {
+        return mapper.readTree(value.replace('\'', '"'));
+    }
+
+    @Test
+    void isEmptyForEqualDocuments() throws JsonProcessingException {
+        var document = json("{'spec': {'replicas': 1, 'template': {'labels': {'app': 'web'}}}}");
+
+        assertThat(MergePatch.diff(document, document.deepCopy())).isEmpty();
+    }
+
+    @Test
+    void mergesObjectsFieldByField() throws JsonProcessingException {
+        var patch = MergePatch.diff(
+                json("{'spec': {'replicas': 1, 'serviceName': 'web'}, 'metadata': {'name': 'web'}}"),
+                json("{'spec': {'replicas': 3, 'serviceName': 'web'}, 'metadata': {'name': 'web'}}"));
+
+        assertThat(patch).isEqualTo(json("{'spec': {'replicas': 3}}"));
+    }
+
+    @Test
+    void nullsRemovedFieldsAndAddsNewOnes() throws JsonProcessingException {
+        var patch = MergePatch.diff(
+                json("{'labels': {'app': 'web', 'tier': 'front'}}"),
+                json("{'labels': {'app': 'web', 'team': 'core'}}"));
+
+        assertThat(patch).isEqualTo(json("{'labels': {'tier': null, 'team': 'core'}}"));
+    }
+
+    @Test
+    void replacesArraysAndTypeChangesWhole() throws JsonProcessingException {
+        var patch = MergePatch.diff(
+                json("{'containers': [{'name': 'a', 'image': 'a:1'}, {'name': 'b'}], 'env': {'A': '1'}}"),
+                json("{'containers': [{'name': 'a', 'image': 'a:2'}, {'name': 'b'}], 'env': 'none'}"));
+
+        assertThat(patch).isEqualTo(
+                json("{'containers': [{'name': 'a', 'image': 'a:2'}, {'name': 'b'}], 'env': 'none'}"));
+    }
+}
@@ -0,0 +1,137 @@
+package br.dev.optimus.gaia.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.longThat;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.mock.env.MockEnvironment;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import br.dev.optimus.gaia.OperationStatus;
+import br.dev.optimus.gaia.exception.PreconditionFailedException;
+import br.dev.optimus.gaia.model.DBOperation;
+import br.dev.optimus.gaia.repository.OperationRepository;
+import br.dev.optimus.gaia.request.ConfigMapRequest;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class OperationServiceTest {
+    private final ObjectMapper mapper = new ObjectMapper();
+    private OperationRepository repository;
+    private ConfigMapService configMapService;
+    private OperationService service;
+
+    @BeforeEach
+    void setUp() {
+        repository = mock(OperationRepository.class);
+        configMapService = mock(ConfigMapService.class);
+        when(repository.save(any())).thenAnswer(invocation -> invocation.getArgument(0));
+        service = new OperationService(repository, mock(PersistentVolumeService.class),
+                mock(PersistentVolumeClaimService.class), configMapService, mock(SecretService.class),
+                mock(StatefulSetService.class), new KubernetesThrottle(new SimpleMeterRegistry(),
+                        new MockEnvironment()),
+                mapper, new MockEnvironment());
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.stop();
+    }
+
+    @Test
+    void submitKeepsTheExpectedVersion() {
+        var operation = service.submit("configmap", "update", 1L, mapper.createObjectNode(), 3L);
+
+        assertThat(operation.getExpectedVersion()).isEqualTo(3L);
+        assertThat(operation.getStatus()).isEqualTo(OperationStatus.PENDING);
+    }
+
+    @Test
+    void updateChecksTheVersionWhenItRuns() {
+        var operation = new DBOperation("configmap", "update", 1L, mapper.createObjectNode());
+        operation.setId(10L);
+        operation.setExpectedVersion(3L);
+        when(repository.findByStatusOrderByIdAsc(eq(OperationStatus.PENDING), any())).thenReturn(List.of(operation));
+        when(repository.claim(eq(10L), eq(OperationStatus.PENDING), eq(OperationStatus.RUNNING), anyLong(),
+                anyString(), anyLong())).thenReturn(1);
+        when(configMapService.update(eq(1L), any(ConfigMapRequest.Update.class), eq(3L)))
+                .thenThrow(new PreconditionFailedException("config map has been modified"));
+
+        service.poll();
+
+        verify(repository, timeout(2000)).save(argThat(saved -> saved.getStatus() == OperationStatus.FAILED
+                && "config map has been modified".equals(saved.getError())));
+    }
+
+    @Test
+    void recoverOnlyReclaimsExpiredLeases() {
+        var before = Instant.now().getEpochSecond();
+
+        service.recover();
+
+        verify(repository).reclaim(eq(OperationStatus.RUNNING), eq(OperationStatus.PENDING),
+                longThat(now -> now >= before));
+    }
+
+    @Test
+    void claimTakesALeaseThatTheHeartbeatRenews() throws InterruptedException {
+        var operation = new DBOperation("configmap", "delete", 1L, null);
+        operation.setId(11L);
+        var started = new CountDownLatch(1);
+        var release = new CountDownLatch(1);
+        when(repository.findByStatusOrderByIdAsc(eq(OperationStatus.PENDING), any())).thenReturn(List.of(operation));
+        when(repository.claim(eq(11L), eq(OperationStatus.PENDING), eq(OperationStatus.RUNNING), anyLong(),
+                anyString(), anyLong())).thenReturn(1);
+        doAnswer(invocation -> {
+            started.countDown();
+            release.await();
+            return null;
+        }).when(configMapService).delete(1L);
+
+        service.poll();
+        assertThat(started.await(2, TimeUnit.SECONDS)).isTrue();
+
+        var owner = ArgumentCaptor.forClass(String.class);
+        verify(repository).claim(eq(11L), eq(OperationStatus.PENDING), eq(OperationStatus.RUNNING), anyLong(),
+                owner.capture(), longThat(until -> until > Instant.now().getEpochSecond()));
+        service.heartbeat();
+        verify(repository).renew(eq(Set.of(11L)), eq(OperationStatus.RUNNING), eq(owner.getValue()), anyLong());
+
+        release.countDown();
+        verify(repository, timeout(2000)).save(argThat(saved -> saved.getStatus() == OperationStatus.SUCCEEDED
+                && saved.getLeaseUntil() == null));
+    }
+
+    @Test
+    void claimLosersAreNotRun() {
+        var operation = new DBOperation("configmap", "delete", 1L, null);
+        operation.setId(12L);
+        when(repository.findByStatusOrderByIdAsc(eq(OperationStatus.PENDING), any())).thenReturn(List.of(operation));
+
+        service.poll();
+        service.heartbeat();
+
+        verify(configMapService, never()).delete(anyLong());
+        verify(repository, never()).renew(any(), any(), any(), any());
+    }
+}
@@ -0,0 +1,98 @@
+package br.dev.optimus.gaia.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import br.dev.optimus.gaia.model.DBOutbox;
+import br.dev.optimus.gaia.repository.OutboxRepository;
+import io.fabric8.kubernetes.api.model.ConfigMap;
+import io.fabric8.kubernetes.api.model.ConfigMapBuilder;
+import io.fabric8.kubernetes.api.model.Secret;
+import io.fabric8.kubernetes.api.model.SecretBuilder;
+import io.fabric8.kubernetes.client.KubernetesClient;
+import io.fabric8.kubernetes.client.KubernetesClientException;
+import io.fabric8.kubernetes.client.server.mock.EnableKubernetesMockClient;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+@EnableKubernetesMockClient(crud = true)
+class ResourceApplierTest {
+    static KubernetesClient client;
+
+    private OutboxRepository outbox;
+    private ResourceApplier applier;
+
+    @BeforeEach
+    void setUp() {
+        outbox = mock(OutboxRepository.class);
+        var env = new MockEnvironment()
+                .withProperty("gaia.write-mode", "outbox")
+                .withProperty("gaia.kubernetes.server-side-apply", "false");
+        applier = new ResourceApplier(client, outbox, mock(PlatformTransactionManager.class),
+                new KubernetesThrottle(new SimpleMeterRegistry(), env), env);
+    }
+
+    private static ConfigMap configMap(String name) {
+        return new ConfigMapBuilder()
+                .withNewMetadata().withNamespace("test").withName(name).endMetadata()
+                .withData(Map.of("key", "value"))
+                .build();
+    }
+
+    private static Secret secret(String name) {
+        return new SecretBuilder()
+                .withNewMetadata().withNamespace("test").withName(name).endMetadata()
+                .withData(Map.of("password", "c2VjcmV0"))
+                .build();
+    }
+
+    @Test
+    void queuesConfigMapsWithoutSendingThem() {
+        applier.write(configMap("queued"), true, item -> item);
+
+        verify(outbox).save(any(DBOutbox.class));
+        assertThat(client.configMaps().inNamespace("test").withName("queued").get()).isNull();
+    }
+
+    @Test
+    void writesSecretsDirectly() {
+        applier.write(secret("direct"), true, item -> item);
+
+        verify(outbox, never()).save(any(DBOutbox.class));
+        assertThat(client.secrets().inNamespace("test").withName("direct").get()).isNotNull();
+    }
+
+    @Test
+    void batchesQueueTheirEntriesWhenSaved() {
+        var items = List.of(configMap("batch-a"), configMap("batch-b"));
+        items.forEach(item -> applier.push(item, true));
+
+        verify(outbox, never()).save(any(DBOutbox.class));
+        applier.saveAll(items, () -> null);
+        verify(outbox, times(2)).save(any(DBOutbox.class));
+        assertThat(client.configMaps().inNamespace("test").withName("batch-a").get()).isNull();
+    }
+
+    @Test
+    void createsDoNotAdoptExistingObjects() {
+        var env = new MockEnvironment().withProperty("gaia.kubernetes.server-side-apply", "true");
+        var direct = new ResourceApplier(client, outbox, mock(PlatformTransactionManager.class),
+                new KubernetesThrottle(new SimpleMeterRegistry(), env), env);
+        client.configMaps().inNamespace("test").resource(configMap("existing")).create();
+
+        assertThatThrownBy(() -> direct.create(configMap("existing")))
+                .isInstanceOfSatisfying(KubernetesClientException.class, e -> assertThat(e.getCode()).isEqualTo(409));
+    }
+}
@@ -0,0 +1,104 @@
+package br.dev.optimus.gaia.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import org.hibernate.SessionFactory;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import br.dev.optimus.gaia.repository.ConfigMapRepository;
+import br.dev.optimus.gaia.repository.OutboxRepository;
+import br.dev.optimus.gaia.repository.SyncCheckpointRepository;
+import br.dev.optimus.gaia.sync.SyncResult;
+import io.fabric8.kubernetes.api.model.ConfigMapBuilder;
+import io.fabric8.kubernetes.client.KubernetesClient;
+import io.fabric8.kubernetes.client.server.mock.EnableKubernetesMockClient;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManagerFactory;
+
+// run with: ./mvnw test -Dtest=SyncBenchmark -Dbenchmark=true
+// add -Dbenchmark.batch-size=1 to measure without JDBC batching
+@DataJpaTest(properties = {
+        "spring.jpa.show-sql=false",
+        "spring.jpa.properties.hibernate.jdbc.batch_size=${benchmark.batch-size:50}",
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "spring.jpa.properties.hibernate.hbm2ddl.create_namespaces=true" })
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@EnableKubernetesMockClient(crud = true)
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class SyncBenchmark {
+    private final Logger log = LoggerFactory.getLogger(SyncBenchmark.class);
+
+    static KubernetesClient client;
+
+    @Autowired
+    private ConfigMapRepository repository;
+
+    @Autowired
+    private SyncCheckpointRepository checkpointRepository;
+
+    @Autowired
+    private OutboxRepository outboxRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @ParameterizedTest
+    @ValueSource(ints = { 1000, 10000, 100000 })
+    void configMaps(int count) {
+        var namespace = "bench-" + count;
+        for (int i = 0; i < count; i++) {
+            client.configMaps().inNamespace(namespace).resource(new ConfigMapBuilder()
+                    .withNewMetadata()
+                    .withNamespace(namespace)
+                    .withName("cm-" + i)
+                    .endMetadata()
+                    .withData(Map.of("key", "value-" + i))
+                    .build()).create();
+        }
+        var env = new MockEnvironment().withProperty("kubernetes.namespace", namespace);
+        env.setActiveProfiles("dev");
+        var throttle = new KubernetesThrottle(new SimpleMeterRegistry(), env);
+        var applier = new ResourceApplier(client, outboxRepository, transactionManager, throttle, env);
+        var service = new ConfigMapService(client, repository, applier, new InformerService(client, env),
+                new SyncCheckpointService(checkpointRepository, throttle, env), new EntityCache(entityManagerFactory),
+                new WriteCoalescer(throttle, List.of(), env), throttle, env);
+
+        var initial = run("initial", count, () -> service.sync(namespace));
+        assertThat(initial.written()).isEqualTo(count);
+        assertThat(initial.deleted()).isZero();
+
+        // nothing changed in the cluster, so the resync resumes or skips every row by its fingerprint
+        var resync = run("resync", count, () -> service.sync(namespace));
+        assertThat(resync.written()).isZero();
+        assertThat(resync.deleted()).isZero();
+    }
+
+    private SyncResult run(String phase, int count, Supplier<SyncResult> sync) {
+        var statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        var start = System.nanoTime();
+        var result = sync.get();
+        var elapsed = (System.nanoTime() - start) / 1_000_000;
+        log.info("{} objects={} written={} skipped={} deleted={} statements={} time={}ms rows/s={}", phase, count,
+                result.written(), result.skipped(), result.deleted(), statistics.getPrepareStatementCount(), elapsed,
+                result.written() * 1000 / Math.max(elapsed, 1));
+        return result;
+    }
+}
@@ -0,0 +1,185 @@
+package br.dev.optimus.gaia.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+
+import br.dev.optimus.gaia.model.DBSyncCheckpoint;
+import br.dev.optimus.gaia.repository.SyncCheckpointRepository;
+import io.fabric8.kubernetes.api.model.ConfigMap;
+import io.fabric8.kubernetes.api.model.ConfigMapBuilder;
+import io.fabric8.kubernetes.api.model.ConfigMapList;
+import io.fabric8.kubernetes.api.model.ConfigMapListBuilder;
+import io.fabric8.kubernetes.api.model.ListOptions;
+import io.fabric8.kubernetes.client.KubernetesClientException;
+import io.fabric8.kubernetes.client.Watch;
+import io.fabric8.kubernetes.client.Watcher;
+import io.fabric8.kubernetes.client.dsl.NonNamespaceOperation;
+import io.fabric8.kubernetes.client.dsl.Resource;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class SyncCheckpointServiceTest {
+    private SyncCheckpointRepository repository;
+    private SyncCheckpointService checkpoints;
+    private NonNamespaceOperation<ConfigMap, ConfigMapList, Resource<ConfigMap>> operation;
+    private final List<String> applied = new ArrayList<>();
+
+    private final KubernetesThrottle throttle = new KubernetesThrottle(new SimpleMeterRegistry(),
+            new MockEnvironment());
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        repository = mock(SyncCheckpointRepository.class);
+        operation = mock(NonNamespaceOperation.class);
+        checkpoints = new SyncCheckpointService(repository, throttle, new MockEnvironment()
+                .withProperty("gaia.sync.resume-timeout", "10000")
+                .withProperty("gaia.sync.resume-idle", "50"));
+    }
+
+    private void checkpoint(String resourceVersion) {
+        var checkpoint = new DBSyncCheckpoint("ConfigMap", "test");
+        checkpoint.setResourceVersion(resourceVersion);
+        when(repository.findByKindAndNamespace("ConfigMap", "test")).thenReturn(Optional.of(checkpoint));
+    }
+
+    private void listedAt(String resourceVersion) {
+        when(operation.list(any(ListOptions.class))).thenReturn(new ConfigMapListBuilder()
+                .withNewMetadata().withResourceVersion(resourceVersion).endMetadata()
+                .build());
+    }
+
+    private static ConfigMap configMap(String name, String resourceVersion) {
+        return new ConfigMapBuilder()
+                .withNewMetadata().withNamespace("test").withName(name).withResourceVersion(resourceVersion)
+                .endMetadata()
+                .build();
+    }
+
+    private boolean resume() {
+        return checkpoints.resume(ConfigMap.class, "test", operation,
+                cm -> applied.add(cm.getMetadata().getName()), cm -> applied.add("-" + cm.getMetadata().getName()));
+    }
+
+    @Test
+    void needsFullSyncWithoutCheckpoint() {
+        when(repository.findByKindAndNamespace("ConfigMap", "test")).thenReturn(Optional.empty());
+
+        assertThat(resume()).isFalse();
+    }
+
+    @Test
+    void skipsTheWatchWhenNothingChanged() {
+        checkpoint("100");
+        listedAt("100");
+
+        assertThat(resume()).isTrue();
+        verify(operation, never()).watch(any(ListOptions.class), any());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void stopsOnceTheListVersionIsReached() {
+        checkpoint("100");
+        listedAt("102");
+        when(operation.watch(any(ListOptions.class), any(Watcher.class))).thenAnswer(invocation -> {
+            Watcher<ConfigMap> watcher = invocation.getArgument(1);
+            watcher.eventReceived(Watcher.Action.MODIFIED, configMap("a", "101"));
+            watcher.eventReceived(Watcher.Action.DELETED, configMap("b", "102"));
+            return mock(Watch.class);
+        });
+
+        var start = System.nanoTime();
+        assertThat(resume()).isTrue();
+        assertThat(System.nanoTime() - start).isLessThan(1_000_000_000L);
+        assertThat(applied).containsExactly("a", "-b");
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void stopsAfterAnIdleGapInsteadOfTheTimeout() {
+        checkpoint("100");
+        // the list version is global, events of other namespaces never reach this watch
+        listedAt("500");
+        when(operation.watch(any(ListOptions.class), any(Watcher.class))).thenReturn(mock(Watch.class));
+
+        var start = System.nanoTime();
+        assertThat(resume()).isTrue();
+        assertThat(System.nanoTime() - start).isLessThan(5_000_000_000L);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void countsTheIdleGapFromTheOpenedWatch() {
+        checkpoint("100");
+        listedAt("101");
+        when(operation.watch(any(ListOptions.class), any(Watcher.class))).thenAnswer(invocation -> {
+            Watcher<ConfigMap> watcher = invocation.getArgument(1);
+            // opening takes longer than the idle gap, the backlog follows right after
+            Thread.sleep(200);
+            CompletableFuture.runAsync(() -> watcher.eventReceived(Watcher.Action.MODIFIED, configMap("a", "101")),
+                    CompletableFuture.delayedExecutor(20, TimeUnit.MILLISECONDS));
+            return mock(Watch.class);
+        });
+
+        assertThat(resume()).isTrue();
+        assertThat(applied).containsExactly("a");
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void needsFullSyncWhenTheReplayDoesNotCatchUpInTime() {
+        checkpoints = new SyncCheckpointService(repository, throttle, new MockEnvironment()
+                .withProperty("gaia.sync.resume-timeout", "300")
+                .withProperty("gaia.sync.resume-idle", "100"));
+        checkpoint("100");
+        listedAt("100000");
+        var version = new AtomicInteger(100);
+        var events = Executors.newSingleThreadScheduledExecutor();
+        when(operation.watch(any(ListOptions.class), any(Watcher.class))).thenAnswer(invocation -> {
+            Watcher<ConfigMap> watcher = invocation.getArgument(1);
+            events.scheduleAtFixedRate(() -> watcher.eventReceived(Watcher.Action.MODIFIED,
+                    configMap("a", String.valueOf(version.incrementAndGet()))), 0, 20, TimeUnit.MILLISECONDS);
+            return mock(Watch.class);
+        });
+
+        try {
+            assertThat(resume()).isFalse();
+        } finally {
+            events.shutdownNow();
+        }
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void needsFullSyncWhenTheCheckpointExpired() {
+        checkpoint("100");
+        listedAt("500");
+        when(operation.watch(any(ListOptions.class), any(Watcher.class)))
+                .thenThrow(new KubernetesClientException("gone", 410, null));
+
+        assertThat(resume()).isFalse();
+    }
+
+    @Test
+    void comparesNumericVersions() {
+        assertThat(SyncCheckpointService.newer("10", "9")).isTrue();
+        assertThat(SyncCheckpointService.newer("9", "10")).isFalse();
+        assertThat(SyncCheckpointService.newer("abc", "10")).isTrue();
+    }
+}
@@ -0,0 +1,117 @@
+package br.dev.optimus.gaia.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.springframework.core.task.TaskDecorator;
+import org.springframework.mock.env.MockEnvironment;
+
+import br.dev.optimus.gaia.service.KubernetesThrottle.Lane;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class WriteCoalescerTest {
+    private final KubernetesThrottle throttle = new KubernetesThrottle(new SimpleMeterRegistry(),
+            new MockEnvironment());
+    private final ThreadLocal<String> context = new ThreadLocal<>();
+    private final TaskDecorator decorator = task -> {
+        var captured = context.get();
+        return () -> {
+            context.set(captured);
+            try {
+                task.run();
+            } finally {
+                context.remove();
+            }
+        };
+    };
+    private final WriteCoalescer coalescer = new WriteCoalescer(throttle, List.of(decorator),
+            new MockEnvironment().withProperty("gaia.coalesce.window", "200"));
+
+    @AfterEach
+    void tearDown() {
+        coalescer.stop();
+    }
+
+    @Test
+    void runsDirectlyWithoutWindow() {
+        var direct = new WriteCoalescer(throttle, List.of(), new MockEnvironment());
+
+        assertThat(direct.submit(Object.class, "ns", "name", () -> "done")).isEqualTo("done");
+        direct.stop();
+    }
+
+    @Test
+    void mergedWritesRunOnceAndShareTheLastResult() throws Exception {
+        var runs = new AtomicInteger();
+        var submitted = new CountDownLatch(1);
+        var first = CompletableFuture.supplyAsync(() -> coalescer.submit(Object.class, "ns", "name", () -> {
+            runs.incrementAndGet();
+            return "first";
+        }));
+        // the first submit registers the entry before the second one replaces its write
+        Thread.sleep(50);
+        var second = CompletableFuture.supplyAsync(() -> {
+            submitted.countDown();
+            return coalescer.submit(Object.class, "ns", "name", () -> {
+                runs.incrementAndGet();
+                return "second";
+            });
+        });
+
+        assertThat(submitted.await(1, TimeUnit.SECONDS)).isTrue();
+        assertThat(first.get(2, TimeUnit.SECONDS)).isEqualTo("second");
+        assertThat(second.get(2, TimeUnit.SECONDS)).isEqualTo("second");
+        assertThat(runs).hasValue(1);
+    }
+
+    @Test
+    void theMergedWriteRunsInTheLaneOfItsCaller() {
+        assertThat(throttle.sync(() -> coalescer.submit(Object.class, "ns", "name", throttle::lane)))
+                .isEqualTo(Lane.SYNC);
+        assertThat(coalescer.submit(Object.class, "ns", "name", throttle::lane)).isEqualTo(Lane.INTERACTIVE);
+    }
+
+    @Test
+    void theMergedWriteRunsInTheDecoratedContextOfItsCaller() {
+        context.set("request");
+        try {
+            assertThat(coalescer.submit(Object.class, "ns", "name", context::get)).isEqualTo("request");
+        } finally {
+            context.remove();
+        }
+    }
+
+    @Test
+    void differentObjectsAreNotMerged() {
+        var a = CompletableFuture.supplyAsync(() -> coalescer.submit(Object.class, "ns", "a", () -> "a"));
+        var b = CompletableFuture.supplyAsync(() -> coalescer.submit(Object.class, "ns", "b", () -> "b"));
+
+        assertThat(a).succeedsWithin(Duration.ofSeconds(2)).isEqualTo("a");
+        assertThat(b).succeedsWithin(Duration.ofSeconds(2)).isEqualTo("b");
+    }
+
+    @Test
+    @Timeout(5)
+    void errorsAreRethrownInsteadOfBlockingTheCallers() {
+        assertThatThrownBy(() -> coalescer.submit(Object.class, "ns", "name", () -> {
+            throw new AssertionError("boom");
+        })).isInstanceOf(AssertionError.class).hasMessage("boom");
+    }
+
+    @Test
+    void runtimeExceptionsReachTheCaller() {
+        assertThatThrownBy(() -> coalescer.submit(Object.class, "ns", "name", () -> {
+            throw new IllegalStateException("failed");
+        })).isInstanceOf(IllegalStateException.class);
+    }
+}
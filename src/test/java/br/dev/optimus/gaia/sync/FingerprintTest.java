@@ -0,0 +1,49 @@
+package br.dev.optimus.gaia.sync;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+class FingerprintTest {
+    @Test
+    void ignoresMapIterationOrder() {
+        var first = new LinkedHashMap<String, String>();
+        first.put("a", "1");
+        first.put("b", "2");
+        var second = new LinkedHashMap<String, String>();
+        second.put("b", "2");
+        second.put("a", "1");
+
+        assertThat(Fingerprint.of("name", first)).isEqualTo(Fingerprint.of("name", second));
+    }
+
+    @Test
+    void ignoresCollectionOrder() {
+        assertThat(Fingerprint.of(List.of("a", "b"))).isEqualTo(Fingerprint.of(List.of("b", "a")));
+    }
+
+    @Test
+    void changesWithAnyValue() {
+        var fingerprint = Fingerprint.of("name", Map.of("key", "value"));
+
+        assertThat(Fingerprint.of("other", Map.of("key", "value"))).isNotEqualTo(fingerprint);
+        assertThat(Fingerprint.of("name", Map.of("key", "other"))).isNotEqualTo(fingerprint);
+        assertThat(Fingerprint.of("name", Map.of("other", "value"))).isNotEqualTo(fingerprint);
+    }
+
+    @Test
+    void separatesFieldsAndItems() {
+        assertThat(Fingerprint.of("a", "b")).isNotEqualTo(Fingerprint.of("ab"));
+        assertThat(Fingerprint.of(List.of("a", "b"))).isNotEqualTo(Fingerprint.of(List.of("ab")));
+        assertThat(Fingerprint.of(Map.of("ab", "c"))).isNotEqualTo(Fingerprint.of(Map.of("a", "bc")));
+    }
+
+    @Test
+    void distinguishesAnEmptyStringFromAMissingField() {
+        assertThat(Fingerprint.of("name", "")).isNotEqualTo(Fingerprint.of("name"));
+    }
+}
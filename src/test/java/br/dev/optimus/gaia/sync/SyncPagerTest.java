@@ -0,0 +1,56 @@
+package br.dev.optimus.gaia.sync;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import io.fabric8.kubernetes.api.model.ConfigMapBuilder;
+import io.fabric8.kubernetes.api.model.ConfigMapList;
+import io.fabric8.kubernetes.api.model.ConfigMapListBuilder;
+import io.fabric8.kubernetes.api.model.ListOptions;
+
+class SyncPagerTest {
+    private static ConfigMapList page(String continueToken, String resourceVersion, String... names) {
+        return new ConfigMapListBuilder()
+                .withNewMetadata()
+                .withContinue(continueToken)
+                .withResourceVersion(resourceVersion)
+                .endMetadata()
+                .withItems(List.of(names).stream()
+                        .map(name -> new ConfigMapBuilder().withNewMetadata().withName(name).endMetadata().build())
+                        .toList())
+                .build();
+    }
+
+    @Test
+    void followsTheContinueTokenUntilTheLastPage() {
+        var requests = new ArrayList<ListOptions>();
+        var pages = new ArrayList<List<String>>();
+
+        var resourceVersion = SyncPager.forEach(options -> {
+            requests.add(options);
+            return options.getContinue() == null ? page("next", "10", "a", "b") : page("", "11", "c");
+        }, 2, items -> pages.add(items.stream().map(item -> item.getMetadata().getName()).toList()));
+
+        assertThat(pages).containsExactly(List.of("a", "b"), List.of("c"));
+        assertThat(requests).extracting(ListOptions::getLimit).containsExactly(2L, 2L);
+        assertThat(requests).extracting(ListOptions::getContinue).containsExactly(null, "next");
+        assertThat(resourceVersion).isEqualTo("11");
+    }
+
+    @Test
+    void stopsAfterASinglePageWithoutAContinueToken() {
+        var calls = new ArrayList<ListOptions>();
+
+        var resourceVersion = SyncPager.forEach(options -> {
+            calls.add(options);
+            return page(null, "5");
+        }, 100, items -> assertThat(items).isEmpty());
+
+        assertThat(calls).hasSize(1);
+        assertThat(resourceVersion).isEqualTo("5");
+    }
+}
@@ -0,0 +1,79 @@
+package br.dev.optimus.gaia.sync;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+class SyncTombstonesTest {
+    record Row(Long id, String name) implements SyncRow {
+        @Override
+        public Long getId() {
+            return id;
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+    }
+
+    private static List<SyncRow> rows(int count) {
+        var rows = new ArrayList<SyncRow>();
+        for (long i = 1; i <= count; i++) {
+            rows.add(new Row(i, "row-" + i));
+        }
+        return rows;
+    }
+
+    @Test
+    void deletesOnlyTheRowsMissingFromTheListing() {
+        var deleted = new ArrayList<Long>();
+
+        var count = SyncTombstones.sweep(rows(4), Set.of("row-1", "row-3"), 10, (ids, at) -> {
+            deleted.addAll(ids);
+            return ids.size();
+        });
+
+        assertThat(deleted).containsExactly(2L, 4L);
+        assertThat(count).isEqualTo(2);
+    }
+
+    @Test
+    void chunksTheIdsByBatchSizeWithOneTimestamp() {
+        var batches = new ArrayList<List<Long>>();
+        var timestamps = new ArrayList<Long>();
+
+        var count = SyncTombstones.sweep(rows(5), Set.of(), 2, (ids, at) -> {
+            batches.add(List.copyOf(ids));
+            timestamps.add(at);
+            return ids.size();
+        });
+
+        assertThat(batches).containsExactly(List.of(1L, 2L), List.of(3L, 4L), List.of(5L));
+        assertThat(timestamps).containsOnly(timestamps.get(0));
+        assertThat(count).isEqualTo(5);
+    }
+
+    @Test
+    void treatsANonPositiveBatchSizeAsOne() {
+        var batches = new ArrayList<List<Long>>();
+
+        SyncTombstones.sweep(rows(2), Set.of(), 0, (ids, at) -> {
+            batches.add(List.copyOf(ids));
+            return ids.size();
+        });
+
+        assertThat(batches).containsExactly(List.of(1L), List.of(2L));
+    }
+
+    @Test
+    void skipsTheUpdateWhenNothingIsMissing() {
+        assertThat(SyncTombstones.sweep(rows(2), Set.of("row-1", "row-2"), 10, (ids, at) -> {
+            throw new AssertionError("nothing to delete");
+        })).isZero();
+    }
+}